@@ -1,6 +1,21 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.AbstractList;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Provides an implementation of an AVL tree.
@@ -21,6 +36,12 @@ public class AvlTree<T extends Comparable<T>> implements Iterable<T> {
 	// the number of nodes in this avl tree
 	private int size;
 
+	// set operations fork subtasks only on subtrees at least this tall
+	private static final int PARALLEL_HEIGHT = 16;
+
+	// instrumentation counters, or null while statistics are disabled
+	private TreeStatistics stats;
+
 	/** The Node structure for this avl tree. */
 	private class Node {
 		private T element;
@@ -32,6 +53,9 @@ public class AvlTree<T extends Comparable<T>> implements Iterable<T> {
 		public Node(T elem) {
 			element = elem;
 			height = 1;
+			if (stats != null) {
+				stats.nodeAllocated();
+			}
 		}
 	}
 
@@ -40,28 +64,286 @@ public class AvlTree<T extends Comparable<T>> implements Iterable<T> {
 	//   Adding values    //
 	////////////////////////
 
-	/** Ensures this avl tree contains the specified element. */
-	public void add(T element) {
-		root = put(element, root);
+	/**
+	 * Ensures this avl tree contains the specified element. Walks down
+	 * iteratively and then retraces only as far as heights keep changing.
+	 *
+	 * @return true if element was added, false if it was already present
+	 */
+	public boolean add(T element) {
+		Node[] path = newPath(height(root) + 1);
+		boolean[] wentLeft = new boolean[path.length];
+		int depth = 0;
+		Node n = root;
+		while (n != null) {
+			visit();
+			int cmp = compare(element, n.element);
+			if (cmp == 0) {
+				// don't add a duplicate
+				endOperation(TreeStatistics.Operation.ADD);
+				return false;
+			}
+			path[depth] = n;
+			wentLeft[depth] = cmp < 0;
+			depth++;
+			n = (cmp < 0) ? n.left : n.right;
+		}
+		endOperation(TreeStatistics.Operation.ADD);
+		size++;
+		retrace(path, wentLeft, depth, new Node(element));
+		return true;
 	}
 
-	/** Adds the specified value, if not already present, to this avl tree. */
-	private Node put(T element, Node n) {
-		// recursively walk down into the tree to add element
-        if (n == null) {
-            size++;
-            return new Node(element);
-        }
-        int cmp = element.compareTo(n.element);
-        if (cmp < 0) {
-            n.left = put(element, n.left);
-        } else if (cmp > 0) {
-            n.right = put(element, n.right);
-        }
 
-        // backtrack to the root, rebalancing as needed
-        n.height = 1 + Math.max(height(n.left), height(n.right));
-        return rebalance(n);
+
+	/**
+	 * Adds all of the given elements to this avl tree. When the batch is
+	 * already in ascending order and large relative to this tree, the tree is
+	 * rebuilt from a single O(n + m) merge instead of m separate adds.
+	 */
+	public void addAll(Collection<? extends T> elements) {
+		if (isAscending(elements) && (long) elements.size() * (height() + 1) >= size) {
+			List<T> merged = mergeDistinct(inorderList(root), elements);
+			root = build(merged, 0, merged.size() - 1);
+			size = merged.size();
+			return;
+		}
+		for (T element : elements) {
+			add(element);
+		}
+	}
+
+
+
+	///////////////////////////////
+	//   Building from sorted    //
+	///////////////////////////////
+
+	/**
+	 * Returns a perfectly balanced avl tree holding the given elements in
+	 * O(n) time. Adjacent duplicates are dropped.
+	 *
+	 * @throws IllegalArgumentException if sorted is not in ascending order
+	 */
+	public static <T extends Comparable<T>> AvlTree<T> fromSorted(T[] sorted) {
+		return fromSorted(Arrays.asList(sorted).iterator());
+	}
+
+	/**
+	 * Returns a perfectly balanced avl tree holding the given elements in
+	 * O(n) time. Adjacent duplicates are dropped.
+	 *
+	 * @throws IllegalArgumentException if sorted is not in ascending order
+	 */
+	public static <T extends Comparable<T>> AvlTree<T> fromSorted(Collection<? extends T> sorted) {
+		return fromSorted(sorted.iterator());
+	}
+
+	/**
+	 * Returns a perfectly balanced avl tree holding the elements produced by
+	 * sorted in O(n) time. Adjacent duplicates are dropped.
+	 *
+	 * @throws IllegalArgumentException if sorted is not in ascending order
+	 */
+	public static <T extends Comparable<T>> AvlTree<T> fromSorted(Iterator<? extends T> sorted) {
+		List<T> elements = new ArrayList<>();
+		while (sorted.hasNext()) {
+			T element = sorted.next();
+			if (!elements.isEmpty()) {
+				int cmp = elements.get(elements.size() - 1).compareTo(element);
+				if (cmp > 0) {
+					throw new IllegalArgumentException();
+				}
+				if (cmp == 0) {
+					continue;
+				}
+			}
+			elements.add(element);
+		}
+		AvlTree<T> tree = new AvlTree<>();
+		tree.root = tree.build(elements, 0, elements.size() - 1);
+		tree.size = elements.size();
+		return tree;
+	}
+
+	/**
+	 * Builds a balanced subtree from elements[lo..hi], which must be
+	 * distinct and ascending, setting each node's height on the way back up.
+	 */
+	private Node build(List<T> elements, int lo, int hi) {
+		if (lo > hi) {
+			return null;
+		}
+		int mid = (lo + hi) >>> 1;
+		Node n = new Node(elements.get(mid));
+		n.left = build(elements, lo, mid - 1);
+		n.right = build(elements, mid + 1, hi);
+		n.height = 1 + Math.max(height(n.left), height(n.right));
+		return n;
+	}
+
+	/** Returns true if the elements are in ascending order. */
+	private static <T extends Comparable<T>> boolean isAscending(Iterable<? extends T> elements) {
+		T previous = null;
+		for (T element : elements) {
+			if (previous != null && previous.compareTo(element) > 0) {
+				return false;
+			}
+			previous = element;
+		}
+		return true;
+	}
+
+	/** Merges two ascending sequences into one ascending list without duplicates. */
+	private static <T extends Comparable<T>> List<T> mergeDistinct(List<T> a,
+			Collection<? extends T> b) {
+		List<T> merged = new ArrayList<>(a.size() + b.size());
+		Iterator<T> left = a.iterator();
+		Iterator<? extends T> right = b.iterator();
+		T x = left.hasNext() ? left.next() : null;
+		T y = right.hasNext() ? right.next() : null;
+		while (x != null || y != null) {
+			T next;
+			if (y == null || (x != null && x.compareTo(y) <= 0)) {
+				next = x;
+				x = left.hasNext() ? left.next() : null;
+			} else {
+				next = y;
+				y = right.hasNext() ? right.next() : null;
+			}
+			if (merged.isEmpty() || merged.get(merged.size() - 1).compareTo(next) != 0) {
+				merged.add(next);
+			}
+		}
+		return merged;
+	}
+
+
+
+	//////////////////////////
+	//   Removing values    //
+	//////////////////////////
+
+	/**
+	 * Ensures this avl tree does not contain the specified element.
+	 *
+	 * @return true if element was removed, false if it was not present
+	 */
+	public boolean remove(T element) {
+		Node[] path = newPath(height(root));
+		boolean[] wentLeft = new boolean[path.length];
+		int depth = 0;
+		Node n = root;
+		while (n != null) {
+			visit();
+			int cmp = compare(element, n.element);
+			if (cmp == 0) {
+				break;
+			}
+			path[depth] = n;
+			wentLeft[depth] = cmp < 0;
+			depth++;
+			n = (cmp < 0) ? n.left : n.right;
+		}
+		endOperation(TreeStatistics.Operation.REMOVE);
+		if (n == null) {
+			return false;
+		}
+		if (n.left != null && n.right != null) {
+			// replace n's element with its successor and unlink that instead
+			path[depth] = n;
+			wentLeft[depth] = false;
+			depth++;
+			Node successor = n.right;
+			while (successor.left != null) {
+				path[depth] = successor;
+				wentLeft[depth] = true;
+				depth++;
+				successor = successor.left;
+			}
+			n.element = successor.element;
+			n = successor;
+		}
+		size--;
+		retrace(path, wentLeft, depth, (n.left != null) ? n.left : n.right);
+		return true;
+	}
+
+	/**
+	 * Removes and returns the smallest element in this avl tree, or returns
+	 * null if this avl tree is empty.
+	 */
+	public T pollFirst() {
+		return pollEnd(true);
+	}
+
+	/**
+	 * Removes and returns the largest element in this avl tree, or returns
+	 * null if this avl tree is empty.
+	 */
+	public T pollLast() {
+		return pollEnd(false);
+	}
+
+	/** Unlinks the leftmost (or rightmost) node and returns its element. */
+	private T pollEnd(boolean leftmost) {
+		if (root == null) {
+			return null;
+		}
+		Node[] path = newPath(height(root));
+		boolean[] wentLeft = new boolean[path.length];
+		int depth = 0;
+		Node n = root;
+		Node next = leftmost ? n.left : n.right;
+		while (next != null) {
+			path[depth] = n;
+			wentLeft[depth] = leftmost;
+			depth++;
+			n = next;
+			next = leftmost ? n.left : n.right;
+		}
+		if (stats != null) {
+			stats.operation(TreeStatistics.Operation.REMOVE, depth + 1);
+		}
+		size--;
+		retrace(path, wentLeft, depth, leftmost ? n.right : n.left);
+		return n.element;
+	}
+
+	/** Returns an empty array for recording a root-to-node path. */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private Node[] newPath(int length) {
+		return (Node[]) new AvlTree.Node[length];
+	}
+
+	/**
+	 * Hangs child below the last node on path and walks back towards the
+	 * root, fixing heights and rebalancing. Stops as soon as a subtree comes
+	 * out of this with its old height, since nothing above it can change.
+	 */
+	private void retrace(Node[] path, boolean[] wentLeft, int depth, Node child) {
+		for (int i = depth - 1; i >= 0; i--) {
+			Node n = path[i];
+			if (wentLeft[i]) {
+				n.left = child;
+			} else {
+				n.right = child;
+			}
+			int oldHeight = n.height;
+			n.height = 1 + Math.max(height(n.left), height(n.right));
+			child = rebalance(n);
+			if (child.height == oldHeight) {
+				if (i == 0) {
+					root = child;
+				} else if (wentLeft[i - 1]) {
+					path[i - 1].left = child;
+				} else {
+					path[i - 1].right = child;
+				}
+				return;
+			}
+		}
+		root = child;
 	}
 
 
@@ -73,19 +355,35 @@ public class AvlTree<T extends Comparable<T>> implements Iterable<T> {
 	/** Rebalance the 3-node neighborhood rooted at n, if needed. */
 	private Node rebalance(Node n) {
 		if (balanceFactor(n) == 2) {
-			if (balanceFactor(n.right) < 0) {
+			boolean isDouble = balanceFactor(n.right) < 0;
+			if (isDouble) {
 				n.right = rotateRight(n.right);
 			}
 			n = rotateLeft(n);
+			countRotation(isDouble);
 		} else if (balanceFactor(n) == -2) {
-			if (balanceFactor(n.left) > 0) {
+			boolean isDouble = balanceFactor(n.left) > 0;
+			if (isDouble) {
 				n.left = rotateLeft(n.left);
 			}
-			n = rotateRight(n);		
+			n = rotateRight(n);
+			countRotation(isDouble);
 		}
 		return n;
 	}
 
+	/** Counts a single or double rotation if statistics are enabled. */
+	private void countRotation(boolean isDouble) {
+		if (stats == null) {
+			return;
+		}
+		if (isDouble) {
+			stats.doubleRotation();
+		} else {
+			stats.singleRotation();
+		}
+	}
+
 	/** Rotate left over the n. */
 	private Node rotateLeft(Node n) {
 		Node m = n.right;
@@ -112,6 +410,290 @@ public class AvlTree<T extends Comparable<T>> implements Iterable<T> {
 	}
 
 
+	/////////////////////////
+	//   Set operations    //
+	/////////////////////////
+
+	/** The set operations that can be run over a pair of subtrees. */
+	private enum SetOp { UNION, INTERSECTION, DIFFERENCE, COPY }
+
+	/**
+	 * Returns a new avl tree holding the elements that are in this tree, in
+	 * other, or in both. Neither tree is modified and the result shares no
+	 * nodes with either.
+	 */
+	public AvlTree<T> union(AvlTree<T> other) {
+		return setOperation(SetOp.UNION, other);
+	}
+
+	/**
+	 * Returns a new avl tree holding the elements that are in both this tree
+	 * and other. Neither tree is modified.
+	 */
+	public AvlTree<T> intersection(AvlTree<T> other) {
+		return setOperation(SetOp.INTERSECTION, other);
+	}
+
+	/**
+	 * Returns a new avl tree holding the elements that are in this tree but
+	 * not in other. Neither tree is modified.
+	 */
+	public AvlTree<T> difference(AvlTree<T> other) {
+		return setOperation(SetOp.DIFFERENCE, other);
+	}
+
+	/**
+	 * Runs op over the roots of this tree and other in the common fork/join
+	 * pool. The task runs on the result tree, so every node it makes belongs
+	 * to the result and holds no reference back to either input.
+	 */
+	private AvlTree<T> setOperation(SetOp op, AvlTree<T> other) {
+		AvlTree<T> result = new AvlTree<>();
+		Built built = ForkJoinPool.commonPool().invoke(result.new SetTask(op, root, other.root));
+		result.root = built.root;
+		result.size = built.size;
+		return result;
+	}
+
+	/** A freshly built subtree together with the number of elements in it. */
+	private class Built {
+		private final Node root;
+		private final int size;
+
+		/** Constructs a result holding size elements under root. */
+		Built(Node root, int size) {
+			this.root = root;
+			this.size = size;
+		}
+	}
+
+	/** Computes one set operation over a pair of subtrees as a fork/join task. */
+	private class SetTask extends RecursiveTask<Built> {
+		private static final long serialVersionUID = 1L;
+
+		private final SetOp op;
+		private final Node a;
+		private final Node b;
+
+		/** Constructs a task applying op to subtrees a and b. */
+		SetTask(SetOp op, Node a, Node b) {
+			this.op = op;
+			this.a = a;
+			this.b = b;
+		}
+
+		@Override
+		protected Built compute() {
+			return apply(op, a, b);
+		}
+	}
+
+	/**
+	 * Applies op to subtrees a and b and returns a freshly built result. Each
+	 * step splits b around the root of a, recurses on the two independent
+	 * halves, and joins the results back around that root. Since the result
+	 * shares no nodes with its inputs, every surviving element is copied and
+	 * the work is O(n + m), but the two halves run in parallel, so the span
+	 * is only polylogarithmic.
+	 */
+	private Built apply(SetOp op, Node a, Node b) {
+		switch (op) {
+			case UNION:
+				if (a == null) {
+					return apply(SetOp.COPY, b, null);
+				}
+				if (b == null) {
+					return apply(SetOp.COPY, a, null);
+				}
+				break;
+			case INTERSECTION:
+				if (a == null || b == null) {
+					return new Built(null, 0);
+				}
+				break;
+			case DIFFERENCE:
+				if (a == null) {
+					return new Built(null, 0);
+				}
+				if (b == null) {
+					return apply(SetOp.COPY, a, null);
+				}
+				// split a around b's root, since only a's elements can survive
+				Split pieces = split(a, b.element);
+				Pair rest = applyPair(op, pieces.left, b.left, pieces.right, b.right,
+						height(b) >= PARALLEL_HEIGHT);
+				return new Built(joinAll(rest.left.root, rest.right.root),
+						rest.left.size + rest.right.size);
+			default:
+				if (a == null) {
+					return new Built(null, 0);
+				}
+				Pair copies = applyPair(op, a.left, null, a.right, null,
+						height(a) >= PARALLEL_HEIGHT);
+				return new Built(node(copies.left.root, a.element, copies.right.root),
+						copies.left.size + 1 + copies.right.size);
+		}
+		Split parts = split(b, a.element);
+		Pair halves = applyPair(op, a.left, parts.left, a.right, parts.right,
+				height(a) >= PARALLEL_HEIGHT);
+		int size = halves.left.size + halves.right.size;
+		if (op == SetOp.INTERSECTION && !parts.found) {
+			return new Built(joinAll(halves.left.root, halves.right.root), size);
+		}
+		return new Built(join(halves.left.root, a.element, halves.right.root), size + 1);
+	}
+
+	/** The results of applying a set operation to two independent pairs of subtrees. */
+	private class Pair {
+		private Built left;
+		private Built right;
+	}
+
+	/**
+	 * Applies op to the independent pairs (a1, b1) and (a2, b2), forking the
+	 * first pair off as a subtask when parallel is true.
+	 */
+	private Pair applyPair(SetOp op, Node a1, Node b1, Node a2, Node b2, boolean parallel) {
+		Pair result = new Pair();
+		if (parallel) {
+			SetTask task = new SetTask(op, a1, b1);
+			task.fork();
+			result.right = apply(op, a2, b2);
+			result.left = task.join();
+		} else {
+			result.left = apply(op, a1, b1);
+			result.right = apply(op, a2, b2);
+		}
+		return result;
+	}
+
+	/** The two sides of a subtree split around an element. */
+	private class Split {
+		private Node left;
+		private boolean found;
+		private Node right;
+	}
+
+	/**
+	 * Splits the subtree n into the elements below element and those above
+	 * it. Never modifies n; the returned sides may share subtrees with it.
+	 */
+	private Split split(Node n, T element) {
+		if (n == null) {
+			return new Split();
+		}
+		int cmp = element.compareTo(n.element);
+		if (cmp == 0) {
+			Split s = new Split();
+			s.left = n.left;
+			s.found = true;
+			s.right = n.right;
+			return s;
+		}
+		if (cmp < 0) {
+			Split s = split(n.left, element);
+			s.right = join(s.right, n.element, n.right);
+			return s;
+		}
+		Split s = split(n.right, element);
+		s.left = join(n.left, n.element, s.left);
+		return s;
+	}
+
+	/**
+	 * Returns an avl subtree holding left, element and right, where every
+	 * element of left is below element and every element of right is above
+	 * it. Takes time proportional to the difference in heights. Copies the
+	 * path it rebuilds rather than modifying left or right.
+	 */
+	private Node join(Node left, T element, Node right) {
+		if (height(left) > height(right) + 1) {
+			return joinRight(left, element, right);
+		}
+		if (height(right) > height(left) + 1) {
+			return joinLeft(left, element, right);
+		}
+		return node(left, element, right);
+	}
+
+	/** Joins by walking down the right spine of the taller left subtree. */
+	private Node joinRight(Node left, T element, Node right) {
+		Node spine;
+		if (height(left.right) <= height(right) + 1) {
+			spine = node(left.right, element, right);
+		} else {
+			spine = joinRight(left.right, element, right);
+		}
+		return rebalanceCopy(node(left.left, left.element, spine));
+	}
+
+	/** Joins by walking down the left spine of the taller right subtree. */
+	private Node joinLeft(Node left, T element, Node right) {
+		Node spine;
+		if (height(right.left) <= height(left) + 1) {
+			spine = node(left, element, right.left);
+		} else {
+			spine = joinLeft(left, element, right.left);
+		}
+		return rebalanceCopy(node(spine, right.element, right.right));
+	}
+
+	/** Joins two subtrees where every element of left is below every element of right. */
+	private Node joinAll(Node left, Node right) {
+		if (left == null) {
+			return right;
+		}
+		if (right == null) {
+			return left;
+		}
+		Node last = left;
+		while (last.right != null) {
+			last = last.right;
+		}
+		return join(withoutLast(left), last.element, right);
+	}
+
+	/** Returns a copy of subtree n without its largest element. */
+	private Node withoutLast(Node n) {
+		if (n.right == null) {
+			return n.left;
+		}
+		return join(n.left, n.element, withoutLast(n.right));
+	}
+
+	/** Returns a new node holding element over the given subtrees. */
+	private Node node(Node left, T element, Node right) {
+		Node n = new Node(element);
+		n.left = left;
+		n.right = right;
+		n.height = 1 + Math.max(height(left), height(right));
+		return n;
+	}
+
+	/**
+	 * Rebalances the freshly made node n. The children a rotation would
+	 * modify are copied first, so subtrees shared with other trees are left
+	 * untouched.
+	 */
+	private Node rebalanceCopy(Node n) {
+		if (balanceFactor(n) == 2) {
+			n.right = node(n.right.left, n.right.element, n.right.right);
+			if (balanceFactor(n.right) < 0) {
+				Node m = n.right.left;
+				n.right.left = node(m.left, m.element, m.right);
+			}
+		} else if (balanceFactor(n) == -2) {
+			n.left = node(n.left.left, n.left.element, n.left.right);
+			if (balanceFactor(n.left) > 0) {
+				Node m = n.left.right;
+				n.left.right = node(m.left, m.element, m.right);
+			}
+		}
+		return rebalance(n);
+	}
+
+
+
 	//////////////////////////////
 	//   Metrics on the tree    //
 	//////////////////////////////
@@ -137,6 +719,528 @@ public class AvlTree<T extends Comparable<T>> implements Iterable<T> {
 
 
 
+	/////////////////////
+	//   Searching     //
+	/////////////////////
+
+	/** Returns true if this avl tree contains element, false otherwise. */
+	public boolean contains(T element) {
+		Node n = root;
+		while (n != null) {
+			visit();
+			int cmp = compare(element, n.element);
+			if (cmp < 0) {
+				n = n.left;
+			} else if (cmp > 0) {
+				n = n.right;
+			} else {
+				break;
+			}
+		}
+		endOperation(TreeStatistics.Operation.SEARCH);
+		return n != null;
+	}
+
+	/**
+	 * Returns the smallest element in this avl tree.
+	 *
+	 * @throws NoSuchElementException if this avl tree is empty
+	 */
+	public T first() {
+		Node n = firstNode();
+		if (n == null) {
+			throw new NoSuchElementException();
+		}
+		return n.element;
+	}
+
+	/**
+	 * Returns the largest element in this avl tree.
+	 *
+	 * @throws NoSuchElementException if this avl tree is empty
+	 */
+	public T last() {
+		Node n = lastNode();
+		if (n == null) {
+			throw new NoSuchElementException();
+		}
+		return n.element;
+	}
+
+	/** Returns the largest element <= element, or null if there is none. */
+	public T floor(T element) {
+		return elementOf(floorNode(element, true));
+	}
+
+	/** Returns the largest element < element, or null if there is none. */
+	public T lower(T element) {
+		return elementOf(floorNode(element, false));
+	}
+
+	/** Returns the smallest element >= element, or null if there is none. */
+	public T ceiling(T element) {
+		return elementOf(ceilingNode(element, true));
+	}
+
+	/** Returns the smallest element > element, or null if there is none. */
+	public T higher(T element) {
+		return elementOf(ceilingNode(element, false));
+	}
+
+	/** Returns the element held in n, or null if n is null. */
+	private T elementOf(Node n) {
+		return (n == null) ? null : n.element;
+	}
+
+	/**
+	 * Returns the node holding the largest element that is below element
+	 * (or equal to it, if inclusive), or null if there is none.
+	 */
+	private Node floorNode(T element, boolean inclusive) {
+		Node n = root;
+		Node best = null;
+		while (n != null) {
+			visit();
+			int cmp = compare(element, n.element);
+			if (cmp > 0 || (cmp == 0 && inclusive)) {
+				best = n;
+				if (cmp == 0) {
+					break;
+				}
+				n = n.right;
+			} else {
+				n = n.left;
+			}
+		}
+		endOperation(TreeStatistics.Operation.SEARCH);
+		return best;
+	}
+
+	/**
+	 * Returns the node holding the smallest element that is above element
+	 * (or equal to it, if inclusive), or null if there is none.
+	 */
+	private Node ceilingNode(T element, boolean inclusive) {
+		Node n = root;
+		Node best = null;
+		while (n != null) {
+			visit();
+			int cmp = compare(element, n.element);
+			if (cmp < 0 || (cmp == 0 && inclusive)) {
+				best = n;
+				if (cmp == 0) {
+					break;
+				}
+				n = n.left;
+			} else {
+				n = n.right;
+			}
+		}
+		endOperation(TreeStatistics.Operation.SEARCH);
+		return best;
+	}
+
+
+
+	//////////////////////
+	//   Statistics     //
+	//////////////////////
+
+	/**
+	 * Turns the counting of statistics on or off. Turning it on starts
+	 * every count from zero. While off, the only cost is a null check.
+	 *
+	 * @see TreeStatistics
+	 */
+	public void setStatisticsEnabled(boolean enabled) {
+		stats = enabled ? new TreeStatistics() : null;
+	}
+
+	/** Returns true if this avl tree is counting statistics. */
+	public boolean isStatisticsEnabled() {
+		return stats != null;
+	}
+
+	/**
+	 * Returns a snapshot of the statistics counted since they were enabled,
+	 * or null if statistics are disabled.
+	 */
+	public TreeStatistics statistics() {
+		return (stats == null) ? null : stats.snapshot();
+	}
+
+	/** Compares a with b, counting the comparison if statistics are enabled. */
+	private int compare(T a, T b) {
+		if (stats != null) {
+			stats.comparison();
+		}
+		return a.compareTo(b);
+	}
+
+	/** Counts a node visited by a search if statistics are enabled. */
+	private void visit() {
+		if (stats != null) {
+			stats.visit();
+		}
+	}
+
+	/** Ends an operation of the given kind if statistics are enabled. */
+	private void endOperation(TreeStatistics.Operation op) {
+		if (stats != null) {
+			stats.operation(op);
+		}
+	}
+
+
+
+	/////////////////////
+	//   Range views   //
+	/////////////////////
+
+	/**
+	 * Returns a view of the elements in this avl tree ranging from fromElement
+	 * to toElement. The view is backed by this tree and copies nothing.
+	 */
+	public SubSet subSet(T fromElement, boolean fromInclusive,
+						 T toElement, boolean toInclusive) {
+		if (fromElement == null || toElement == null) {
+			throw new IllegalArgumentException();
+		}
+		if (fromElement.compareTo(toElement) > 0) {
+			throw new IllegalArgumentException();
+		}
+		return new SubSet(fromElement, fromInclusive, toElement, toInclusive);
+	}
+
+	/**
+	 * Returns a view of the elements ranging from fromElement, inclusive, to
+	 * toElement, exclusive.
+	 */
+	public SubSet subSet(T fromElement, T toElement) {
+		return subSet(fromElement, true, toElement, false);
+	}
+
+	/** Returns a view of the elements less than (or equal to, if inclusive) toElement. */
+	public SubSet headSet(T toElement, boolean inclusive) {
+		if (toElement == null) {
+			throw new IllegalArgumentException();
+		}
+		return new SubSet(null, false, toElement, inclusive);
+	}
+
+	/** Returns a view of the elements strictly less than toElement. */
+	public SubSet headSet(T toElement) {
+		return headSet(toElement, false);
+	}
+
+	/** Returns a view of the elements greater than (or equal to, if inclusive) fromElement. */
+	public SubSet tailSet(T fromElement, boolean inclusive) {
+		if (fromElement == null) {
+			throw new IllegalArgumentException();
+		}
+		return new SubSet(fromElement, inclusive, null, false);
+	}
+
+	/** Returns a view of the elements greater than or equal to fromElement. */
+	public SubSet tailSet(T fromElement) {
+		return tailSet(fromElement, true);
+	}
+
+	/**
+	 * A live view of the elements of this avl tree that lie between two
+	 * bounds. A null bound means the view is unbounded on that side.
+	 */
+	public class SubSet implements Iterable<T> {
+		private final T lo;
+		private final boolean loInclusive;
+		private final T hi;
+		private final boolean hiInclusive;
+
+		/** Constructs a view over the given bounds. */
+		private SubSet(T lo, boolean loInclusive, T hi, boolean hiInclusive) {
+			this.lo = lo;
+			this.loInclusive = loInclusive;
+			this.hi = hi;
+			this.hiInclusive = hiInclusive;
+		}
+
+		/** Returns true if element lies within the bounds of this view. */
+		private boolean inRange(T element) {
+			return !tooLow(element, lo, loInclusive) && !tooHigh(element, hi, hiInclusive);
+		}
+
+		/** Returns true if this view contains element. */
+		public boolean contains(T element) {
+			return inRange(element) && AvlTree.this.contains(element);
+		}
+
+		/** Returns true if there are no elements in this view. */
+		public boolean isEmpty() {
+			return lowestNode(lo, loInclusive, hi, hiInclusive) == null;
+		}
+
+		/**
+		 * Returns the number of elements in this view. Runs in time
+		 * proportional to the number of elements counted.
+		 */
+		public int size() {
+			int count = 0;
+			for (Iterator<T> it = iterator(); it.hasNext(); it.next()) {
+				count++;
+			}
+			return count;
+		}
+
+		/**
+		 * Returns the smallest element in this view.
+		 *
+		 * @throws NoSuchElementException if this view is empty
+		 */
+		public T first() {
+			Node n = lowestNode(lo, loInclusive, hi, hiInclusive);
+			if (n == null) {
+				throw new NoSuchElementException();
+			}
+			return n.element;
+		}
+
+		/**
+		 * Returns the largest element in this view.
+		 *
+		 * @throws NoSuchElementException if this view is empty
+		 */
+		public T last() {
+			Node n = (hi == null) ? lastNode() : floorNode(hi, hiInclusive);
+			if (n == null || tooLow(n.element, lo, loInclusive)) {
+				throw new NoSuchElementException();
+			}
+			return n.element;
+		}
+
+		/** Returns an iterator over this view in ascending natural order. */
+		@Override
+		public Iterator<T> iterator() {
+			return new RangeIterator(lo, loInclusive, hi, hiInclusive);
+		}
+
+		/** Returns a string representation of the elements in this view. */
+		@Override
+		public String toString() {
+			List<T> list = new ArrayList<>();
+			for (T element : this) {
+				list.add(element);
+			}
+			return list.toString();
+		}
+	}
+
+	/** Returns true if element falls below the lower bound lo. */
+	private boolean tooLow(T element, T lo, boolean loInclusive) {
+		if (lo == null) {
+			return false;
+		}
+		int cmp = element.compareTo(lo);
+		return cmp < 0 || (cmp == 0 && !loInclusive);
+	}
+
+	/** Returns true if element falls above the upper bound hi. */
+	private boolean tooHigh(T element, T hi, boolean hiInclusive) {
+		if (hi == null) {
+			return false;
+		}
+		int cmp = element.compareTo(hi);
+		return cmp > 0 || (cmp == 0 && !hiInclusive);
+	}
+
+	/** Returns the node holding the smallest element within the bounds, or null. */
+	private Node lowestNode(T lo, boolean loInclusive, T hi, boolean hiInclusive) {
+		Node n = (lo == null) ? firstNode() : ceilingNode(lo, loInclusive);
+		if (n == null || tooHigh(n.element, hi, hiInclusive)) {
+			return null;
+		}
+		return n;
+	}
+
+	/** Returns the leftmost node of this avl tree, or null if empty. */
+	private Node firstNode() {
+		Node n = root;
+		while (n != null && n.left != null) {
+			n = n.left;
+		}
+		return n;
+	}
+
+	/** Returns the rightmost node of this avl tree, or null if empty. */
+	private Node lastNode() {
+		Node n = root;
+		while (n != null && n.right != null) {
+			n = n.right;
+		}
+		return n;
+	}
+
+	/**
+	 * Walks the elements between two bounds in ascending order, keeping only
+	 * the O(log n) path of pending ancestors on a stack.
+	 */
+	private class RangeIterator implements Iterator<T> {
+		private final Deque<Node> stack = new ArrayDeque<>();
+		private final T hi;
+		private final boolean hiInclusive;
+
+		/** Positions this iterator at the first element within the bounds. */
+		RangeIterator(T lo, boolean loInclusive, T hi, boolean hiInclusive) {
+			this.hi = hi;
+			this.hiInclusive = hiInclusive;
+			Node n = root;
+			while (n != null) {
+				if (tooLow(n.element, lo, loInclusive)) {
+					n = n.right;
+				} else {
+					stack.push(n);
+					n = n.left;
+				}
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return !stack.isEmpty() && !tooHigh(stack.peek().element, hi, hiInclusive);
+		}
+
+		@Override
+		public T next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			Node n = stack.pop();
+			for (Node m = n.right; m != null; m = m.left) {
+				stack.push(m);
+			}
+			return n.element;
+		}
+	}
+
+
+
+	//////////////////
+	//   Freezing   //
+	//////////////////
+
+	/**
+	 * Returns an immutable copy of this avl tree laid out in a single
+	 * cache-friendly array, for read-mostly lookups. Later changes to this
+	 * tree are not reflected in the copy.
+	 */
+	public EytzingerSet<T> freeze() {
+		return new EytzingerSet<>(new RangeIterator(null, false, null, false), size);
+	}
+
+
+
+	///////////////////
+	//   Snapshots   //
+	///////////////////
+
+	/**
+	 * Writes the elements and shape of this avl tree to file.
+	 *
+	 * @throws IOException if file cannot be written
+	 * @see TreeSnapshot
+	 */
+	public void writeSnapshot(Path file, KeyCodec<T> codec) throws IOException {
+		byte[] heights = new byte[size];
+		int i = 0;
+		Deque<Node> stack = new ArrayDeque<>();
+		Node n = root;
+		while (n != null || !stack.isEmpty()) {
+			for (; n != null; n = n.left) {
+				stack.push(n);
+			}
+			n = stack.pop();
+			heights[i++] = (byte) n.height;
+			n = n.right;
+		}
+		TreeSnapshot.write(file, codec, () -> new RangeIterator(null, false, null, false),
+				size, heights);
+	}
+
+	/**
+	 * Returns an avl tree rebuilt from the snapshot in file in O(n) time,
+	 * without any comparisons or rotations. A snapshot that records shape is
+	 * rebuilt node for node; one that does not is built perfectly balanced.
+	 *
+	 * @throws IOException if file cannot be read, is not a snapshot, or
+	 *     records heights that do not describe an avl tree
+	 */
+	public static <T extends Comparable<T>> AvlTree<T> readSnapshot(Path file, KeyCodec<T> codec)
+			throws IOException {
+		TreeSnapshot<T> snapshot = TreeSnapshot.open(file, codec);
+		AvlTree<T> tree = new AvlTree<>();
+		tree.size = snapshot.size();
+		if (!snapshot.hasShape()) {
+			List<T> elements = new AbstractList<T>() {
+				@Override
+				public T get(int index) {
+					return snapshot.key(index);
+				}
+
+				@Override
+				public int size() {
+					return snapshot.size();
+				}
+			};
+			tree.root = tree.build(elements, 0, elements.size() - 1);
+			return tree;
+		}
+		// each node adopts as its left subtree the shorter nodes it displaces
+		// from the stack, and becomes the right child of the taller node below
+		Deque<AvlTree<T>.Node> stack = new ArrayDeque<>();
+		for (int i = 0; i < snapshot.size(); i++) {
+			AvlTree<T>.Node n = tree.new Node(snapshot.key(i));
+			n.height = snapshot.height(i);
+			AvlTree<T>.Node displaced = null;
+			while (!stack.isEmpty() && stack.peek().height < n.height) {
+				displaced = stack.pop();
+			}
+			n.left = displaced;
+			if (!stack.isEmpty()) {
+				stack.peek().right = n;
+			}
+			stack.push(n);
+		}
+		tree.root = stack.peekLast();
+		if (!tree.hasValidShape()) {
+			throw new IOException("snapshot records heights that do not form an avl tree: " + file);
+		}
+		return tree;
+	}
+
+	/**
+	 * Returns true if every node of this tree records the height its
+	 * children imply and is balanced, and the tree holds size nodes.
+	 */
+	private boolean hasValidShape() {
+		int count = 0;
+		Deque<Node> stack = new ArrayDeque<>();
+		Node n = root;
+		while (n != null || !stack.isEmpty()) {
+			for (; n != null; n = n.left) {
+				stack.push(n);
+			}
+			n = stack.pop();
+			if (n.height != 1 + Math.max(height(n.left), height(n.right))
+					|| Math.abs(balanceFactor(n)) > 1) {
+				return false;
+			}
+			count++;
+			n = n.right;
+		}
+		return count == size;
+	}
+
+
+
 	//////////////////////////////////
 	//   toString and traversals    //
 	//////////////////////////////////
@@ -182,4 +1286,125 @@ public class AvlTree<T extends Comparable<T>> implements Iterable<T> {
         return inorderList(root).iterator();      
 	}
 
+
+
+	/////////////////
+	//   Streams   //
+	/////////////////
+
+	/**
+	 * Returns a spliterator over the values in this avl tree in ascending
+	 * order. It walks the tree in place and splits at subtree boundaries,
+	 * so parallel streams divide the work into near-equal halves without
+	 * copying the elements first.
+	 */
+	@Override
+	public Spliterator<T> spliterator() {
+		return new TreeSpliterator(null, false, null, false, size, true);
+	}
+
+	/** Returns a sequential stream over the values in this avl tree in ascending order. */
+	public Stream<T> stream() {
+		return StreamSupport.stream(spliterator(), false);
+	}
+
+	/** Returns a parallel stream over the values in this avl tree. */
+	public Stream<T> parallelStream() {
+		return StreamSupport.stream(spliterator(), true);
+	}
+
+	/**
+	 * Covers the elements between two bounds. A split hands off everything
+	 * below the topmost node strictly inside the bounds, which is that
+	 * node's left subtree plus the ancestors and right subtrees between it
+	 * and the lower bound. Traversal reuses RangeIterator, after which the
+	 * spliterator no longer splits.
+	 */
+	private class TreeSpliterator implements Spliterator<T> {
+		private T lo;
+		private boolean loInclusive;
+		private final T hi;
+		private final boolean hiInclusive;
+		private long estimate;
+		private boolean sized;
+		private Iterator<T> iterator;
+
+		/** Constructs a spliterator over the given bounds. */
+		TreeSpliterator(T lo, boolean loInclusive, T hi, boolean hiInclusive,
+				long estimate, boolean sized) {
+			this.lo = lo;
+			this.loInclusive = loInclusive;
+			this.hi = hi;
+			this.hiInclusive = hiInclusive;
+			this.estimate = estimate;
+			this.sized = sized;
+		}
+
+		@Override
+		public Spliterator<T> trySplit() {
+			if (iterator != null) {
+				return null;
+			}
+			Node n = root;
+			while (n != null) {
+				if (tooLow(n.element, lo, false)) {
+					n = n.right;
+				} else if (tooHigh(n.element, hi, false)) {
+					n = n.left;
+				} else {
+					break;
+				}
+			}
+			if (n == null) {
+				return null;
+			}
+			TreeSpliterator prefix = new TreeSpliterator(lo, loInclusive, n.element, false,
+					estimate >>> 1, false);
+			lo = n.element;
+			loInclusive = true;
+			estimate -= prefix.estimate;
+			sized = false;
+			return prefix;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super T> action) {
+			if (iterator == null) {
+				iterator = new RangeIterator(lo, loInclusive, hi, hiInclusive);
+			}
+			if (!iterator.hasNext()) {
+				return false;
+			}
+			action.accept(iterator.next());
+			return true;
+		}
+
+		@Override
+		public void forEachRemaining(Consumer<? super T> action) {
+			if (iterator == null) {
+				iterator = new RangeIterator(lo, loInclusive, hi, hiInclusive);
+			}
+			while (iterator.hasNext()) {
+				action.accept(iterator.next());
+			}
+		}
+
+		@Override
+		public long estimateSize() {
+			return estimate;
+		}
+
+		@Override
+		public int characteristics() {
+			int characteristics = ORDERED | SORTED | DISTINCT | NONNULL;
+			return sized ? characteristics | SIZED : characteristics;
+		}
+
+		/** Returns null, since elements are in their natural order. */
+		@Override
+		public Comparator<? super T> getComparator() {
+			return null;
+		}
+	}
+
 }
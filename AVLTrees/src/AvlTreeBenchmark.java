@@ -0,0 +1,447 @@
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractList;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.IntConsumer;
+import java.util.stream.StreamSupport;
+
+/**
+ * Provides a rough timing client that compares AvlTree against the JDK
+ * collections on a few representative workloads.
+ */
+public class AvlTreeBenchmark {
+
+	// number of operations timed in each trial
+	private static final int OPERATIONS = 2_000_000;
+
+	// keys are drawn from [0, KEY_RANGE)
+	private static final int KEY_RANGE = 1 << 20;
+
+	// number of timed trials per workload; the first is treated as warmup
+	private static final int TRIALS = 5;
+
+	// the largest number of threads in the concurrent workload
+	private static final int MAX_THREADS = 64;
+
+	/** Drives execution. */
+	public static void main(String[] args) throws IOException {
+		for (int trial = 0; trial < TRIALS; trial++) {
+			String label = (trial == 0) ? "warmup" : "trial " + trial;
+			System.out.println(label);
+			churn();
+			bulkLoad();
+			setOperations();
+			primitives();
+			lookups();
+			offHeap();
+			snapshots();
+			concurrent();
+			streams();
+		}
+	}
+
+	/** Times a random mix of inserts and deletes on a tree of steady size. */
+	private static void churn() {
+		int[] keys = randomKeys(OPERATIONS, 42);
+
+		long start = System.nanoTime();
+		AvlTree<Integer> avl = new AvlTree<>();
+		for (int i = 0; i < keys.length; i++) {
+			if ((i & 1) == 0) {
+				avl.add(keys[i]);
+			} else {
+				avl.remove(keys[i - 1] ^ 1);
+			}
+		}
+		report("  churn  AvlTree", start, avl.size());
+
+		start = System.nanoTime();
+		TreeMap<Integer, Boolean> map = new TreeMap<>();
+		for (int i = 0; i < keys.length; i++) {
+			if ((i & 1) == 0) {
+				map.put(keys[i], Boolean.TRUE);
+			} else {
+				map.remove(keys[i - 1] ^ 1);
+			}
+		}
+		report("  churn  TreeMap", start, map.size());
+	}
+
+	/** Times loading sorted keys one add at a time versus fromSorted. */
+	private static void bulkLoad() {
+		Integer[] sorted = new Integer[OPERATIONS];
+		for (int i = 0; i < sorted.length; i++) {
+			sorted[i] = i;
+		}
+
+		long start = System.nanoTime();
+		AvlTree<Integer> avl = new AvlTree<>();
+		for (Integer key : sorted) {
+			avl.add(key);
+		}
+		report("  load   AvlTree.add", start, avl.size());
+
+		start = System.nanoTime();
+		avl = AvlTree.fromSorted(sorted);
+		report("  load   AvlTree.fromSorted", start, avl.size());
+	}
+
+	/** Times merging two trees by repeated adds versus the join-based union. */
+	private static void setOperations() {
+		int[] keys = randomKeys(OPERATIONS, 7);
+		AvlTree<Integer> a = new AvlTree<>();
+		AvlTree<Integer> b = new AvlTree<>();
+		for (int i = 0; i < keys.length; i++) {
+			if ((i & 1) == 0) {
+				a.add(keys[i]);
+			} else {
+				b.add(keys[i]);
+			}
+		}
+
+		long start = System.nanoTime();
+		AvlTree<Integer> merged = AvlTree.fromSorted(a.iterator());
+		for (Integer key : b) {
+			merged.add(key);
+		}
+		report("  merge  copy + add", start, merged.size());
+
+		start = System.nanoTime();
+		merged = a.union(b);
+		report("  merge  union", start, merged.size());
+
+		start = System.nanoTime();
+		report("  merge  intersection", start, a.intersection(b).size());
+
+		start = System.nanoTime();
+		report("  merge  difference", start, a.difference(b).size());
+	}
+
+	/** Times random lookups on linked trees against their frozen Eytzinger copies. */
+	private static void lookups() {
+		AvlTree<Integer> avl = new AvlTree<>();
+		for (int key : randomKeys(OPERATIONS, 13)) {
+			avl.add(key);
+		}
+		EytzingerSet<Integer> frozen = avl.freeze();
+		Integer[] probes = new Integer[OPERATIONS];
+		int[] keys = randomKeys(OPERATIONS, 17);
+		for (int i = 0; i < probes.length; i++) {
+			probes[i] = keys[i];
+		}
+
+		long start = System.nanoTime();
+		int hits = 0;
+		for (Integer probe : probes) {
+			if (avl.contains(probe)) {
+				hits++;
+			}
+		}
+		report("  lookup AvlTree", start, hits);
+
+		start = System.nanoTime();
+		hits = 0;
+		for (Integer probe : probes) {
+			if (frozen.contains(probe)) {
+				hits++;
+			}
+		}
+		report("  lookup EytzingerSet", start, hits);
+
+		IntAvlTree ints = new IntAvlTree();
+		for (int key : randomKeys(OPERATIONS, 13)) {
+			ints.add(key);
+		}
+		IntEytzingerSet frozenInts = ints.freeze();
+
+		start = System.nanoTime();
+		hits = 0;
+		for (int key : keys) {
+			if (ints.contains(key)) {
+				hits++;
+			}
+		}
+		report("  lookup IntAvlTree", start, hits);
+
+		start = System.nanoTime();
+		hits = 0;
+		for (int key : keys) {
+			if (frozenInts.contains(key)) {
+				hits++;
+			}
+		}
+		report("  lookup IntEytzingerSet", start, hits);
+	}
+
+	/**
+	 * Compares the retained heap and collector activity of AvlTree<Integer>
+	 * against IntAvlTree while both absorb the same inserts and deletes.
+	 */
+	private static void primitives() {
+		int[] keys = randomKeys(OPERATIONS, 11);
+		primitivesBoxed(keys);
+		primitivesUnboxed(keys);
+	}
+
+	/** Runs the primitives workload on AvlTree<Integer>. */
+	private static void primitivesBoxed(int[] keys) {
+		long heap = usedHeap();
+		long collections = collectionCount();
+		long start = System.nanoTime();
+		AvlTree<Integer> avl = new AvlTree<>();
+		for (int i = 0; i < keys.length; i++) {
+			avl.add(keys[i]);
+			if ((i & 3) == 3) {
+				avl.remove(keys[i - 1]);
+			}
+		}
+		reportMemory("  prim   AvlTree<Integer>", start, heap, collections, avl.size());
+		Reference.reachabilityFence(avl);
+	}
+
+	/** Runs the primitives workload on IntAvlTree. */
+	private static void primitivesUnboxed(int[] keys) {
+		long heap = usedHeap();
+		long collections = collectionCount();
+		long start = System.nanoTime();
+		IntAvlTree ints = new IntAvlTree();
+		for (int i = 0; i < keys.length; i++) {
+			ints.add(keys[i]);
+			if ((i & 3) == 3) {
+				ints.remove(keys[i - 1]);
+			}
+		}
+		reportMemory("  prim   IntAvlTree", start, heap, collections, ints.size());
+		Reference.reachabilityFence(ints);
+	}
+
+	/**
+	 * Prints the elapsed time, collections run and heap retained since the
+	 * given starting measurements. The caller keeps its structure reachable
+	 * until this returns.
+	 */
+	private static void reportMemory(String label, long start, long heap,
+			long collections, int result) {
+		long millis = (System.nanoTime() - start) / 1_000_000;
+		collections = collectionCount() - collections;
+		heap = usedHeap() - heap;
+		System.out.printf("%-34s %6d ms   (size %d, %d MB retained, %d GCs)%n",
+				label, millis, result, heap >> 20, collections);
+	}
+
+	/** Shows that OffHeapLongAvlTree retains almost no heap as it grows. */
+	private static void offHeap() {
+		long heap = usedHeap();
+		long collections = collectionCount();
+		long start = System.nanoTime();
+		try (OffHeapLongAvlTree tree = new OffHeapLongAvlTree()) {
+			for (int key : randomKeys(OPERATIONS, 19)) {
+				tree.add(key);
+			}
+			reportMemory("  offheap add", start, heap, collections, tree.size());
+			System.out.printf("%-28s %6d MB off heap%n", "", tree.offHeapBytes() >> 20);
+		}
+	}
+
+	/** Times reloading a tree from a snapshot against rebuilding it with adds. */
+	private static void snapshots() throws IOException {
+		int[] keys = randomKeys(OPERATIONS, 23);
+		AvlTree<Integer> avl = new AvlTree<>();
+		for (int key : keys) {
+			avl.add(key);
+		}
+		Path file = Files.createTempFile("avl", ".snapshot");
+		try {
+			long start = System.nanoTime();
+			avl.writeSnapshot(file, KeyCodec.INTEGER);
+			report("  snap   writeSnapshot", start, avl.size());
+
+			start = System.nanoTime();
+			AvlTree<Integer> rebuilt = new AvlTree<>();
+			for (int key : keys) {
+				rebuilt.add(key);
+			}
+			report("  snap   rebuild by add", start, rebuilt.size());
+
+			start = System.nanoTime();
+			rebuilt = AvlTree.readSnapshot(file, KeyCodec.INTEGER);
+			report("  snap   readSnapshot", start, rebuilt.size());
+
+			start = System.nanoTime();
+			TreeSnapshot<Integer> mapped = TreeSnapshot.open(file, KeyCodec.INTEGER);
+			report("  snap   open mapped", start, mapped.size());
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	/**
+	 * Times a read-mostly mix (90% contains, 5% add, 5% remove) and a
+	 * write-only mix (50% add, 50% remove) split across a growing number of
+	 * threads, against ConcurrentSkipListSet. Writers only scale with the
+	 * threads when the machine has the cores to run them.
+	 */
+	private static void concurrent() {
+		concurrent("read", 1);
+		concurrent("write", 10);
+	}
+
+	/**
+	 * Times a mix where writes in twenty operations are adds and as many
+	 * again are removes, and the rest are contains. Operations are drawn
+	 * independently of the keys, so a key may be added, removed and added
+	 * again, and both structures run the same sequence.
+	 */
+	private static void concurrent(String mix, int writes) {
+		int[] keys = randomKeys(OPERATIONS, 29);
+		int[] ops = randomOperations(OPERATIONS, 31);
+		for (int threads = 1; threads <= MAX_THREADS; threads *= 2) {
+			ConcurrentAvlTree<Integer> avl = new ConcurrentAvlTree<>();
+			ConcurrentSkipListSet<Integer> skipList = new ConcurrentSkipListSet<>();
+			for (int i = 0; i < keys.length; i += 2) {
+				avl.add(keys[i]);
+				skipList.add(keys[i]);
+			}
+			long start = System.nanoTime();
+			runThreads(threads, keys.length, i -> {
+				int key = keys[i];
+				if (ops[i] < writes) {
+					avl.add(key);
+				} else if (ops[i] < 2 * writes) {
+					avl.remove(key);
+				} else {
+					avl.contains(key);
+				}
+			});
+			report("  conc   " + mix + " ConcurrentAvl x" + threads, start, avl.size());
+
+			start = System.nanoTime();
+			runThreads(threads, keys.length, i -> {
+				int key = keys[i];
+				if (ops[i] < writes) {
+					skipList.add(key);
+				} else if (ops[i] < 2 * writes) {
+					skipList.remove(key);
+				} else {
+					skipList.contains(key);
+				}
+			});
+			report("  conc   " + mix + " SkipList x" + threads, start, skipList.size());
+		}
+	}
+
+	/**
+	 * Splits the indices [0, count) evenly across the given number of
+	 * threads, runs operation on each, and waits for them all.
+	 */
+	private static void runThreads(int threads, int count, IntConsumer operation) {
+		Thread[] workers = new Thread[threads];
+		int share = count / threads;
+		for (int t = 0; t < threads; t++) {
+			int from = t * share;
+			int to = (t == threads - 1) ? count : from + share;
+			workers[t] = new Thread(() -> {
+				for (int i = from; i < to; i++) {
+					operation.accept(i);
+				}
+			});
+			workers[t].start();
+		}
+		for (Thread worker : workers) {
+			try {
+				worker.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Times summing a tree through a parallel stream on an iterator-based
+	 * spliterator like Iterable's default, which copies the tree first, and
+	 * through the tree's own spliterator.
+	 */
+	private static void streams() {
+		AvlTree<Integer> avl = AvlTree.fromSorted(new AbstractList<Integer>() {
+			@Override
+			public Integer get(int index) {
+				return index;
+			}
+
+			@Override
+			public int size() {
+				return 4 * OPERATIONS;
+			}
+		});
+
+		long expected = (long) avl.size() * (avl.size() - 1) / 2;
+
+		long start = System.nanoTime();
+		long sum = StreamSupport.stream(Spliterators.spliteratorUnknownSize(avl.iterator(),
+				Spliterator.ORDERED), true).mapToLong(Integer::longValue).sum();
+		report("  stream copying iterator", start, avl.size());
+
+		start = System.nanoTime();
+		sum += avl.stream().mapToLong(Integer::longValue).sum();
+		report("  stream sequential", start, avl.size());
+
+		start = System.nanoTime();
+		sum += avl.parallelStream().mapToLong(Integer::longValue).sum();
+		report("  stream parallel", start, avl.size());
+
+		if (sum != 3 * expected) {
+			throw new IllegalStateException("stream sums disagree");
+		}
+	}
+
+	/** Returns the heap in use after requesting a full collection. */
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		System.gc();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	/** Returns the total number of collections run so far by all collectors. */
+	private static long collectionCount() {
+		long count = 0;
+		for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+			count += Math.max(0, bean.getCollectionCount());
+		}
+		return count;
+	}
+
+	/** Returns count pseudorandom keys drawn from a fixed seed. */
+	private static int[] randomKeys(int count, long seed) {
+		Random random = new Random(seed);
+		int[] keys = new int[count];
+		for (int i = 0; i < count; i++) {
+			keys[i] = random.nextInt(KEY_RANGE);
+		}
+		return keys;
+	}
+
+	/** Returns count operation codes drawn uniformly from [0, 20). */
+	private static int[] randomOperations(int count, long seed) {
+		Random random = new Random(seed);
+		int[] ops = new int[count];
+		for (int i = 0; i < count; i++) {
+			ops[i] = random.nextInt(20);
+		}
+		return ops;
+	}
+
+	/** Prints the elapsed time since start along with a result checksum. */
+	private static void report(String label, long start, int result) {
+		long millis = (System.nanoTime() - start) / 1_000_000;
+		System.out.printf("%-34s %6d ms   (size %d)%n", label, millis, result);
+	}
+}
@@ -0,0 +1,561 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Provides an AVL tree that may be shared by many threads. Readers never
+ * block: they walk the tree optimistically and validate each step against
+ * a per-node version, in the style of Bronson et al.'s concurrent AVL tree.
+ * Writers lock nodes hand over hand on the way down, always a parent
+ * before its child. A writer lets go of everything above the point where
+ * its change is known to stop affecting heights, so writers in disjoint
+ * subtrees proceed in parallel. Writers bump the version of every node
+ * whose key range shrinks (a node rotated downwards) or that leaves the
+ * tree, which sends any reader standing on it back to the root.
+ */
+public class ConcurrentAvlTree<T extends Comparable<T>> implements Iterable<T> {
+
+
+	/////////////////
+	//   Fields    //
+	/////////////////
+
+	// enough path entries for any avl tree of int-sized size
+	private static final int MAX_HEIGHT = 64;
+
+	// returned by a search attempt that must start over
+	private static final Object RETRY = new Object();
+
+	// a sentinel above the root, which is always its right child
+	private final Node<T> holder = new Node<>(null);
+
+	// the number of nodes in this avl tree
+	private final LongAdder size = new LongAdder();
+
+	/**
+	 * The Node structure for this avl tree. Each node is its own writer lock.
+	 * The version is even while the node is stable and odd while its key
+	 * range is shrinking; a node that has left the tree keeps an odd version
+	 * forever. The height is only read or written under a lock held on the
+	 * node or on its parent.
+	 */
+	private static final class Node<T> extends ReentrantLock {
+		private static final long serialVersionUID = 1L;
+
+		private final T element;
+		private volatile Node<T> left;
+		private volatile Node<T> right;
+		private volatile long version;
+		private int height;
+
+		/** Contructs a node containing the given element. */
+		Node(T elem) {
+			element = elem;
+			height = 1;
+		}
+	}
+
+	/**
+	 * The state of one add or remove. The writer holds the lock of every node
+	 * from path[top] down to path[depth - 1], and went left below each node
+	 * whose wentLeft entry is true.
+	 */
+	private static final class Update<T> {
+		private final Node<T>[] path = newNodes(MAX_HEIGHT);
+		private final boolean[] wentLeft = new boolean[MAX_HEIGHT];
+		private int top;
+		private int depth;
+
+		// the nodes the current rebalance rotated downwards
+		private final Node<T>[] shrinking = newNodes(2);
+		private int shrinkingCount;
+
+		// the nodes the current rebalance locked in addition to the path
+		private final Node<T>[] rotating = newNodes(2);
+		private int rotatingCount;
+	}
+
+	/** Returns an array for holding nodes. */
+	@SuppressWarnings("unchecked")
+	private static <T> Node<T>[] newNodes(int length) {
+		return (Node<T>[]) new Node<?>[length];
+	}
+
+
+	/////////////////////
+	//   Searching     //
+	/////////////////////
+
+	/** The kinds of optimistic search a reader can make. */
+	private enum Mode { EXACT, CEILING, HIGHER, FLOOR, LOWER, FIRST, LAST }
+
+	/** Returns true if this avl tree contains element, false otherwise. */
+	public boolean contains(T element) {
+		return search(element, Mode.EXACT) != null;
+	}
+
+	/** Returns the smallest element >= element, or null if there is none. */
+	public T ceiling(T element) {
+		return search(element, Mode.CEILING);
+	}
+
+	/** Returns the smallest element > element, or null if there is none. */
+	public T higher(T element) {
+		return search(element, Mode.HIGHER);
+	}
+
+	/** Returns the largest element <= element, or null if there is none. */
+	public T floor(T element) {
+		return search(element, Mode.FLOOR);
+	}
+
+	/** Returns the largest element < element, or null if there is none. */
+	public T lower(T element) {
+		return search(element, Mode.LOWER);
+	}
+
+	/**
+	 * Returns the smallest element in this avl tree.
+	 *
+	 * @throws NoSuchElementException if this avl tree is empty
+	 */
+	public T first() {
+		T first = search(null, Mode.FIRST);
+		if (first == null) {
+			throw new NoSuchElementException();
+		}
+		return first;
+	}
+
+	/**
+	 * Returns the largest element in this avl tree.
+	 *
+	 * @throws NoSuchElementException if this avl tree is empty
+	 */
+	public T last() {
+		T last = search(null, Mode.LAST);
+		if (last == null) {
+			throw new NoSuchElementException();
+		}
+		return last;
+	}
+
+	/** Repeats a search attempt until one completes without interference. */
+	@SuppressWarnings("unchecked")
+	private T search(T key, Mode mode) {
+		while (true) {
+			Object result = attempt(key, mode);
+			if (result != RETRY) {
+				return (T) result;
+			}
+			Thread.onSpinWait();
+		}
+	}
+
+	/**
+	 * Walks down from the root without locking. Each step reads the child
+	 * link and the child's version, then checks that the link and the
+	 * parent's version are unchanged, so the child was still responsible for
+	 * the key's range when its version was read. Returns RETRY if any check
+	 * fails or a node is mid-change.
+	 */
+	private Object attempt(T key, Mode mode) {
+		Node<T> n = holder;
+		long version = n.version;
+		boolean goRight = true;
+		T best = null;
+		while (true) {
+			Node<T> child = goRight ? n.right : n.left;
+			if (child == null) {
+				return (n.version == version) ? best : RETRY;
+			}
+			long childVersion = child.version;
+			if ((childVersion & 1) != 0
+					|| (goRight ? n.right : n.left) != child
+					|| n.version != version) {
+				return RETRY;
+			}
+			n = child;
+			version = childVersion;
+
+			int cmp;
+			if (mode == Mode.FIRST) {
+				cmp = -1;
+			} else if (mode == Mode.LAST) {
+				cmp = 1;
+			} else {
+				cmp = key.compareTo(n.element);
+			}
+			if (cmp == 0 && (mode == Mode.EXACT || mode == Mode.CEILING || mode == Mode.FLOOR)) {
+				return n.element;
+			}
+			switch (mode) {
+				case CEILING:
+				case HIGHER:
+				case FIRST:
+					if (cmp < 0) {
+						best = n.element;
+					}
+					goRight = cmp >= 0;
+					break;
+				case FLOOR:
+				case LOWER:
+				case LAST:
+					if (cmp > 0) {
+						best = n.element;
+					}
+					goRight = cmp > 0;
+					break;
+				default:
+					goRight = cmp > 0;
+			}
+		}
+	}
+
+
+
+	////////////////////////////////////
+	//   Adding and removing values   //
+	////////////////////////////////////
+
+	/**
+	 * Ensures this avl tree contains the specified element.
+	 *
+	 * @return true if element was added, false if it was already present
+	 */
+	public boolean add(T element) {
+		Update<T> u = enter();
+		try {
+			Node<T> n = holder.right;
+			while (n != null) {
+				int cmp = lockAndCompare(element, n);
+				if (cmp == 0) {
+					n.unlock();
+					return false;
+				}
+				// an uneven node absorbs the growth, by evening out or by a
+				// rotation, so nothing above its parent can change
+				if (n.left == null ? n.right != null : n.right == null || n.left.height != n.right.height) {
+					release(u, u.depth - 1);
+				}
+				push(u, n, cmp < 0);
+				n = (cmp < 0) ? n.left : n.right;
+			}
+			retrace(u, new Node<>(element));
+			size.increment();
+			return true;
+		} finally {
+			release(u, u.depth);
+		}
+	}
+
+	/**
+	 * Ensures this avl tree does not contain the specified element.
+	 *
+	 * @return true if element was removed, false if it was not present
+	 */
+	public boolean remove(T element) {
+		Update<T> u = enter();
+		try {
+			Node<T> n = holder.right;
+			while (n != null) {
+				int cmp = lockAndCompare(element, n);
+				if (cmp == 0) {
+					break;
+				}
+				// an even node only becomes uneven when one side shrinks,
+				// so nothing above its parent can change
+				if (height(n.left) == height(n.right)) {
+					release(u, u.depth - 1);
+				}
+				push(u, n, cmp < 0);
+				n = (cmp < 0) ? n.left : n.right;
+			}
+			if (n == null) {
+				return false;
+			}
+			if (n.left != null && n.right != null) {
+				// publish a copy of the successor in n's place before its old
+				// node is unlinked, so no reader can miss the successor
+				int index = u.depth;
+				push(u, n, false);
+				Node<T> successor = n.right;
+				successor.lock();
+				while (successor.left != null) {
+					push(u, successor, true);
+					successor = successor.left;
+					successor.lock();
+				}
+				Node<T> replacement = new Node<>(successor.element);
+				replacement.left = n.left;
+				replacement.right = n.right;
+				replacement.height = n.height;
+				replacement.lock();
+				link(u.path[index - 1], u.wentLeft[index - 1], replacement);
+				unlink(n);
+				u.path[index] = replacement;
+				n.unlock();
+				n = successor;
+			}
+			unlink(n);
+			retrace(u, (n.left != null) ? n.left : n.right);
+			n.unlock();
+			size.decrement();
+			return true;
+		} finally {
+			release(u, u.depth);
+		}
+	}
+
+	/** Starts an update holding only the lock of the holder. */
+	private Update<T> enter() {
+		Update<T> u = new Update<>();
+		holder.lock();
+		u.path[0] = holder;
+		u.wentLeft[0] = false;
+		u.depth = 1;
+		return u;
+	}
+
+	/**
+	 * Locks n and compares element to it, letting go of n again if the
+	 * comparison throws, since n is not on the path yet.
+	 */
+	private int lockAndCompare(T element, Node<T> n) {
+		n.lock();
+		try {
+			return element.compareTo(n.element);
+		} catch (RuntimeException | Error e) {
+			n.unlock();
+			throw e;
+		}
+	}
+
+	/** Appends n, which the caller has locked, to the path of u. */
+	private void push(Update<T> u, Node<T> n, boolean left) {
+		u.path[u.depth] = n;
+		u.wentLeft[u.depth] = left;
+		u.depth++;
+	}
+
+	/** Unlocks the nodes on the path of u above index, which becomes the top. */
+	private void release(Update<T> u, int index) {
+		for (; u.top < index; u.top++) {
+			u.path[u.top].unlock();
+			u.path[u.top] = null;
+		}
+	}
+
+	/** Makes child the left or right child of parent. */
+	private void link(Node<T> parent, boolean left, Node<T> child) {
+		if (left) {
+			parent.left = child;
+		} else {
+			parent.right = child;
+		}
+	}
+
+	/** Marks n as removed from the tree, sending any reader on it back to the root. */
+	private void unlink(Node<T> n) {
+		n.version = n.version | 1;
+	}
+
+	/**
+	 * Hangs child below the last node on the path of u and walks back
+	 * towards the root, fixing heights and rebalancing. Each rebalanced
+	 * subtree is relinked before its rotated nodes are marked stable again.
+	 * Stops as soon as a subtree keeps its old height, which happens at the
+	 * latest just below the top of the locked path.
+	 */
+	private void retrace(Update<T> u, Node<T> child) {
+		if (u.depth == 1) {
+			holder.right = child;
+			return;
+		}
+		for (int i = u.depth - 1; i > u.top; i--) {
+			Node<T> n = u.path[i];
+			link(n, u.wentLeft[i], child);
+			int oldHeight = n.height;
+			n.height = 1 + Math.max(height(n.left), height(n.right));
+			child = rebalance(u, n);
+			if (child != n) {
+				link(u.path[i - 1], u.wentLeft[i - 1], child);
+			}
+			endRebalance(u);
+			if (child.height == oldHeight) {
+				return;
+			}
+		}
+	}
+
+
+
+	/////////////////////////////////
+	//   Rebalancing operations    //
+	/////////////////////////////////
+
+	/**
+	 * Rebalance the 3-node neighborhood rooted at n, if needed. The child and
+	 * grandchild a rotation moves are locked first; after an add they are on
+	 * the path already, but after a remove they are on the other side.
+	 */
+	private Node<T> rebalance(Update<T> u, Node<T> n) {
+		if (balanceFactor(n) == 2) {
+			Node<T> m = hold(u, n.right);
+			if (balanceFactor(m) < 0) {
+				hold(u, m.left);
+				n.right = rotateRight(u, m);
+			}
+			n = rotateLeft(u, n);
+		} else if (balanceFactor(n) == -2) {
+			Node<T> m = hold(u, n.left);
+			if (balanceFactor(m) > 0) {
+				hold(u, m.right);
+				n.left = rotateLeft(u, m);
+			}
+			n = rotateRight(u, n);
+		}
+		return n;
+	}
+
+	/** Locks n, a child of a node held by u, until endRebalance. */
+	private Node<T> hold(Update<T> u, Node<T> n) {
+		n.lock();
+		u.rotating[u.rotatingCount++] = n;
+		return n;
+	}
+
+	/** Rotate left over n, which moves down and so is marked as shrinking. */
+	private Node<T> rotateLeft(Update<T> u, Node<T> n) {
+		beginShrinking(u, n);
+		Node<T> m = n.right;
+		n.right = m.left;
+		m.left = n;
+		n.height = 1 + Math.max(height(n.left), height(n.right));
+		m.height = 1 + Math.max(height(m.left), height(m.right));
+		return m;
+	}
+
+	/** Rotate right over n, which moves down and so is marked as shrinking. */
+	private Node<T> rotateRight(Update<T> u, Node<T> n) {
+		beginShrinking(u, n);
+		Node<T> m = n.left;
+		n.left = m.right;
+		m.right = n;
+		n.height = 1 + Math.max(height(n.left), height(n.right));
+		m.height = 1 + Math.max(height(m.left), height(m.right));
+		return m;
+	}
+
+	/** Gives n an odd version until endRebalance is called. */
+	private void beginShrinking(Update<T> u, Node<T> n) {
+		n.version = n.version + 1;
+		u.shrinking[u.shrinkingCount++] = n;
+	}
+
+	/**
+	 * Returns every node marked as shrinking to a new, even version, then
+	 * unlocks the nodes the rebalance locked.
+	 */
+	private void endRebalance(Update<T> u) {
+		for (int i = 0; i < u.shrinkingCount; i++) {
+			u.shrinking[i].version = u.shrinking[i].version + 1;
+			u.shrinking[i] = null;
+		}
+		u.shrinkingCount = 0;
+		for (int i = 0; i < u.rotatingCount; i++) {
+			u.rotating[i].unlock();
+			u.rotating[i] = null;
+		}
+		u.rotatingCount = 0;
+	}
+
+	/** Returns the balance factor of n. */
+	private int balanceFactor(Node<T> n) {
+		return height(n.right) - height(n.left);
+	}
+
+	/** Returns the height of the given node. */
+	private int height(Node<T> n) {
+		if (n == null) {
+			return 0;
+		}
+		return n.height;
+	}
+
+
+
+	//////////////////////////////
+	//   Metrics on the tree    //
+	//////////////////////////////
+
+	/**
+	 * Returns the number of values in this avl tree. While writers are
+	 * active the count may miss updates that are still in progress.
+	 */
+	public int size() {
+		return size.intValue();
+	}
+
+	/** Returns true if this avl tree is empty, false otherwise. */
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+
+
+	//////////////////////////////////
+	//   toString and traversals    //
+	//////////////////////////////////
+
+	/**
+	 * Returns a string representation of the elements in this avl tree
+	 * listed in ascending natural order.
+	 */
+	@Override
+	public String toString() {
+		List<T> list = new ArrayList<>();
+		for (T element : this) {
+			list.add(element);
+		}
+		return list.toString();
+	}
+
+
+
+	////////////////////
+	//   Iteration    //
+	////////////////////
+
+	/**
+	 * Returns a weakly consistent iterator over the values in this avl tree
+	 * in ascending order. Each step is an O(log n) search for the next
+	 * larger element, so the iterator never blocks writers and reflects
+	 * any changes made beyond its current position.
+	 */
+	@Override
+	public Iterator<T> iterator() {
+		return new Iterator<T>() {
+			private T next = search(null, Mode.FIRST);
+
+			@Override
+			public boolean hasNext() {
+				return next != null;
+			}
+
+			@Override
+			public T next() {
+				if (next == null) {
+					throw new NoSuchElementException();
+				}
+				T element = next;
+				next = higher(element);
+				return element;
+			}
+		};
+	}
+
+}
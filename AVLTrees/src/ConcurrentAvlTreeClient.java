@@ -0,0 +1,139 @@
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Provides a stress client for the ConcurrentAvlTree class. Each round,
+ * several writers add and remove keys on disjoint stripes, each checking
+ * every result against its own reference set, while readers look up keys
+ * that are present throughout with contains, floor and ceiling. At the
+ * end of a round the contents and size of the tree must equal the union
+ * of the references. Exits with status 1 on the first failure.
+ */
+public class ConcurrentAvlTreeClient {
+
+	// the number of rounds, each on a fresh tree
+	private static final int ROUNDS = 8;
+
+	// the number of writer and reader threads per round
+	private static final int WRITERS = 8;
+	private static final int READERS = 4;
+
+	// the number of adds and removes each writer makes per round
+	private static final int WRITES = 50_000;
+
+	// the keys that stay in the tree for a whole round are -STRIDE * [1, PERMANENT]
+	private static final int PERMANENT = 200;
+	private static final int STRIDE = 7;
+
+	/** Drives execution. */
+	public static void main(String[] args) throws InterruptedException {
+		for (int round = 0; round < ROUNDS; round++) {
+			String failure = round(round, 1 << (6 + round));
+			if (failure != null) {
+				System.out.println("round " + round + " FAILED: " + failure);
+				System.exit(1);
+			}
+		}
+		System.out.println("all " + ROUNDS + " rounds passed");
+	}
+
+	/**
+	 * Runs one round with writers drawing from range keys each, returning
+	 * a description of the first failure seen or null if there was none.
+	 */
+	private static String round(int round, int range) throws InterruptedException {
+		ConcurrentAvlTree<Integer> tree = new ConcurrentAvlTree<>();
+		for (int i = 1; i <= PERMANENT; i++) {
+			tree.add(-STRIDE * i);
+		}
+		List<Set<Integer>> references = new ArrayList<>();
+		List<String> failures = new ArrayList<>();
+		AtomicBoolean writing = new AtomicBoolean(true);
+		AtomicLong misses = new AtomicLong();
+		List<Thread> threads = new ArrayList<>();
+
+		for (int w = 0; w < WRITERS; w++) {
+			Set<Integer> reference = new HashSet<>();
+			references.add(reference);
+			int stripe = w;
+			Random random = new Random(31L * round + w);
+			threads.add(new Thread(() -> {
+				for (int i = 0; i < WRITES; i++) {
+					int key = random.nextInt(range) * WRITERS + stripe;
+					boolean expected;
+					boolean actual;
+					if (random.nextBoolean()) {
+						expected = reference.add(key);
+						actual = tree.add(key);
+					} else {
+						expected = reference.remove(key);
+						actual = tree.remove(key);
+					}
+					if (expected != actual) {
+						synchronized (failures) {
+							failures.add("writer " + stripe + " got " + actual + " for " + key);
+						}
+						return;
+					}
+				}
+			}));
+		}
+		for (int r = 0; r < READERS; r++) {
+			Random random = new Random(-31L * round - r);
+			threads.add(new Thread(() -> {
+				while (writing.get()) {
+					int key = -STRIDE * (1 + random.nextInt(PERMANENT));
+					Integer ceiling = tree.ceiling(key - STRIDE / 2);
+					Integer floor = tree.floor(key + STRIDE / 2);
+					if (!tree.contains(key) || ceiling == null || ceiling != key
+							|| floor == null || floor != key) {
+						misses.incrementAndGet();
+					}
+				}
+			}));
+		}
+
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (int w = 0; w < WRITERS; w++) {
+			threads.get(w).join();
+		}
+		writing.set(false);
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		if (!failures.isEmpty()) {
+			return failures.get(0);
+		}
+		if (misses.get() != 0) {
+			return misses.get() + " lookups missed a permanent key";
+		}
+		TreeSet<Integer> expected = new TreeSet<>();
+		for (Set<Integer> reference : references) {
+			expected.addAll(reference);
+		}
+		for (int i = 1; i <= PERMANENT; i++) {
+			expected.add(-STRIDE * i);
+		}
+		List<Integer> actual = new ArrayList<>();
+		for (Integer element : tree) {
+			actual.add(element);
+		}
+		if (!actual.equals(new ArrayList<>(expected))) {
+			return "contents differ from the references";
+		}
+		if (tree.size() != expected.size()) {
+			return "size " + tree.size() + ", expected " + expected.size();
+		}
+		System.out.println("round " + round + " passed, size " + tree.size());
+		return null;
+	}
+}
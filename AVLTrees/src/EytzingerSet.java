@@ -0,0 +1,171 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Provides an immutable sorted set laid out in a single array in Eytzinger
+ * (breadth-first) order: the root is at index 1 and the children of index k
+ * are at 2k and 2k + 1. The top levels of every search share the first few
+ * cache lines of the array, and each step computes the next index instead of
+ * branching on the comparison, so lookups miss the cache far less often than
+ * in a linked tree.
+ */
+public class EytzingerSet<T extends Comparable<T>> implements Iterable<T> {
+
+	// the elements in Eytzinger order; index 0 is unused
+	private final Object[] layout;
+
+	// the number of elements in this set
+	private final int size;
+
+	/**
+	 * Constructs a set from the first size elements produced by sorted,
+	 * which must be distinct and in ascending order.
+	 */
+	public EytzingerSet(Iterator<? extends T> sorted, int size) {
+		this.size = size;
+		this.layout = new Object[size + 1];
+		// an in-order walk of the implicit tree visits the slots in sorted order
+		for (int k = firstIndex(); k != 0; k = nextIndex(k)) {
+			layout[k] = sorted.next();
+		}
+	}
+
+	/** Returns the number of elements in this set. */
+	public int size() {
+		return size;
+	}
+
+	/** Returns true if this set is empty, false otherwise. */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/** Returns true if this set contains element, false otherwise. */
+	public boolean contains(T element) {
+		int k = ceilingIndex(element);
+		return k != 0 && element.compareTo(at(k)) == 0;
+	}
+
+	/** Returns the smallest element >= element, or null if there is none. */
+	public T ceiling(T element) {
+		int k = ceilingIndex(element);
+		return (k == 0) ? null : at(k);
+	}
+
+	/** Returns the largest element <= element, or null if there is none. */
+	public T floor(T element) {
+		int k = 1;
+		while (k <= size) {
+			k = 2 * k + (at(k).compareTo(element) <= 0 ? 1 : 0);
+		}
+		// drop the trailing left turns and the right turn before them
+		k >>>= Integer.numberOfTrailingZeros(k) + 1;
+		return (k == 0) ? null : at(k);
+	}
+
+	/**
+	 * Returns the smallest element in this set.
+	 *
+	 * @throws NoSuchElementException if this set is empty
+	 */
+	public T first() {
+		if (size == 0) {
+			throw new NoSuchElementException();
+		}
+		return at(firstIndex());
+	}
+
+	/**
+	 * Returns the largest element in this set.
+	 *
+	 * @throws NoSuchElementException if this set is empty
+	 */
+	public T last() {
+		if (size == 0) {
+			throw new NoSuchElementException();
+		}
+		int k = 1;
+		while (2 * k + 1 <= size) {
+			k = 2 * k + 1;
+		}
+		return at(k);
+	}
+
+	/** Returns the index of the smallest element >= element, or 0 if there is none. */
+	private int ceilingIndex(T element) {
+		int k = 1;
+		while (k <= size) {
+			k = 2 * k + (at(k).compareTo(element) < 0 ? 1 : 0);
+		}
+		// drop the trailing right turns and the left turn before them
+		return k >>> (Integer.numberOfTrailingZeros(~k) + 1);
+	}
+
+	/** Returns the index of the smallest element, or 0 if this set is empty. */
+	private int firstIndex() {
+		if (size == 0) {
+			return 0;
+		}
+		int k = 1;
+		while (2 * k <= size) {
+			k = 2 * k;
+		}
+		return k;
+	}
+
+	/** Returns the index of the in-order successor of index k, or 0 if there is none. */
+	private int nextIndex(int k) {
+		if (2 * k + 1 <= size) {
+			k = 2 * k + 1;
+			while (2 * k <= size) {
+				k = 2 * k;
+			}
+			return k;
+		}
+		return k >>> (Integer.numberOfTrailingZeros(~k) + 1);
+	}
+
+	/** Returns the element stored at index k. */
+	@SuppressWarnings("unchecked")
+	private T at(int k) {
+		return (T) layout[k];
+	}
+
+	/** Returns an iterator over the elements of this set in ascending order. */
+	@Override
+	public Iterator<T> iterator() {
+		return new Iterator<T>() {
+			private int k = firstIndex();
+
+			@Override
+			public boolean hasNext() {
+				return k != 0;
+			}
+
+			@Override
+			public T next() {
+				if (k == 0) {
+					throw new NoSuchElementException();
+				}
+				T element = at(k);
+				k = nextIndex(k);
+				return element;
+			}
+		};
+	}
+
+	/**
+	 * Returns a string representation of the elements in this set listed in
+	 * ascending natural order.
+	 */
+	@Override
+	public String toString() {
+		List<T> list = new ArrayList<>();
+		for (T element : this) {
+			list.add(element);
+		}
+		return list.toString();
+	}
+}
@@ -0,0 +1,420 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.OptionalInt;
+import java.util.PrimitiveIterator;
+
+/**
+ * Provides an AVL tree specialized for int keys. Nodes are slots in parallel
+ * primitive arrays rather than objects: keys, child indices and heights
+ * each live in their own array, slot 0 stands in for null, and removed
+ * slots are recycled through a free list threaded through the left array.
+ * Nothing is boxed and adding to a tree with free slots allocates nothing.
+ * Not safe for use by multiple threads.
+ */
+public class IntAvlTree {
+
+
+	/////////////////
+	//   Fields    //
+	/////////////////
+
+	// the index used for an empty subtree
+	private static final int NIL = 0;
+
+	// enough path entries for any avl tree addressable by int indices
+	private static final int MAX_HEIGHT = 64;
+
+	// the initial number of node slots, including the NIL slot
+	private static final int INITIAL_CAPACITY = 16;
+
+	// node storage, indexed by node
+	private int[] keys = new int[INITIAL_CAPACITY];
+	private int[] left = new int[INITIAL_CAPACITY];
+	private int[] right = new int[INITIAL_CAPACITY];
+	private byte[] height = new byte[INITIAL_CAPACITY];
+
+	// the root of this avl tree
+	private int root = NIL;
+
+	// the number of nodes in this avl tree
+	private int size;
+
+	// the first never-used slot
+	private int nextUnused = 1;
+
+	// the head of the list of released slots, chained through left
+	private int freeList = NIL;
+
+	// scratch space for the path walked by add and remove
+	private final int[] path = new int[MAX_HEIGHT];
+	private final boolean[] wentLeft = new boolean[MAX_HEIGHT];
+
+
+	////////////////////////
+	//   Adding values    //
+	////////////////////////
+
+	/**
+	 * Ensures this avl tree contains the specified key.
+	 *
+	 * @return true if key was added, false if it was already present
+	 */
+	public boolean add(int key) {
+		int depth = 0;
+		int n = root;
+		while (n != NIL) {
+			if (key == keys[n]) {
+				return false;
+			}
+			path[depth] = n;
+			wentLeft[depth] = key < keys[n];
+			n = wentLeft[depth] ? left[n] : right[n];
+			depth++;
+		}
+		size++;
+		retrace(depth, allocate(key));
+		return true;
+	}
+
+	/** Returns a fresh leaf slot holding key, growing the arrays if needed. */
+	private int allocate(int key) {
+		int n;
+		if (freeList != NIL) {
+			n = freeList;
+			freeList = left[n];
+		} else {
+			if (nextUnused == keys.length) {
+				int capacity = keys.length + (keys.length >> 1);
+				keys = Arrays.copyOf(keys, capacity);
+				left = Arrays.copyOf(left, capacity);
+				right = Arrays.copyOf(right, capacity);
+				height = Arrays.copyOf(height, capacity);
+			}
+			n = nextUnused++;
+		}
+		keys[n] = key;
+		left[n] = NIL;
+		right[n] = NIL;
+		height[n] = 1;
+		return n;
+	}
+
+
+
+	//////////////////////////
+	//   Removing values    //
+	//////////////////////////
+
+	/**
+	 * Ensures this avl tree does not contain the specified key.
+	 *
+	 * @return true if key was removed, false if it was not present
+	 */
+	public boolean remove(int key) {
+		int depth = 0;
+		int n = root;
+		while (n != NIL && key != keys[n]) {
+			path[depth] = n;
+			wentLeft[depth] = key < keys[n];
+			n = wentLeft[depth] ? left[n] : right[n];
+			depth++;
+		}
+		if (n == NIL) {
+			return false;
+		}
+		if (left[n] != NIL && right[n] != NIL) {
+			// replace n's key with its successor and unlink that instead
+			path[depth] = n;
+			wentLeft[depth] = false;
+			depth++;
+			int successor = right[n];
+			while (left[successor] != NIL) {
+				path[depth] = successor;
+				wentLeft[depth] = true;
+				depth++;
+				successor = left[successor];
+			}
+			keys[n] = keys[successor];
+			n = successor;
+		}
+		size--;
+		retrace(depth, (left[n] != NIL) ? left[n] : right[n]);
+		release(n);
+		return true;
+	}
+
+	/** Returns slot n to the free list. */
+	private void release(int n) {
+		left[n] = freeList;
+		right[n] = NIL;
+		freeList = n;
+	}
+
+	/**
+	 * Hangs child below the last node on path and walks back towards the
+	 * root, fixing heights and rebalancing. Stops as soon as a subtree comes
+	 * out of this with its old height, since nothing above it can change.
+	 */
+	private void retrace(int depth, int child) {
+		for (int i = depth - 1; i >= 0; i--) {
+			int n = path[i];
+			if (wentLeft[i]) {
+				left[n] = child;
+			} else {
+				right[n] = child;
+			}
+			int oldHeight = height[n];
+			updateHeight(n);
+			child = rebalance(n);
+			if (height[child] == oldHeight) {
+				if (i == 0) {
+					root = child;
+				} else if (wentLeft[i - 1]) {
+					left[path[i - 1]] = child;
+				} else {
+					right[path[i - 1]] = child;
+				}
+				return;
+			}
+		}
+		root = child;
+	}
+
+
+
+	/////////////////////////////////
+	//   Rebalancing operations    //
+	/////////////////////////////////
+
+	/** Rebalance the 3-node neighborhood rooted at n, if needed. */
+	private int rebalance(int n) {
+		if (balanceFactor(n) == 2) {
+			if (balanceFactor(right[n]) < 0) {
+				right[n] = rotateRight(right[n]);
+			}
+			n = rotateLeft(n);
+		} else if (balanceFactor(n) == -2) {
+			if (balanceFactor(left[n]) > 0) {
+				left[n] = rotateLeft(left[n]);
+			}
+			n = rotateRight(n);
+		}
+		return n;
+	}
+
+	/** Rotate left over n. */
+	private int rotateLeft(int n) {
+		int m = right[n];
+		right[n] = left[m];
+		left[m] = n;
+		updateHeight(n);
+		updateHeight(m);
+		return m;
+	}
+
+	/** Rotate right over n. */
+	private int rotateRight(int n) {
+		int m = left[n];
+		left[n] = right[m];
+		right[m] = n;
+		updateHeight(n);
+		updateHeight(m);
+		return m;
+	}
+
+	/** Returns the balance factor of n. */
+	private int balanceFactor(int n) {
+		return height[right[n]] - height[left[n]];
+	}
+
+	/** Recomputes the height of n from its children. */
+	private void updateHeight(int n) {
+		height[n] = (byte) (1 + Math.max(height[left[n]], height[right[n]]));
+	}
+
+
+
+	//////////////////////////////
+	//   Metrics on the tree    //
+	//////////////////////////////
+
+	/** Returns the number of values in this avl tree. */
+	public int size() {
+		return size;
+	}
+
+	/** Returns true if this avl tree is empty, false otherwise. */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/** Returns the height of this avl tree. */
+	public int height() {
+		return height[root];
+	}
+
+
+
+	/////////////////////
+	//   Searching     //
+	/////////////////////
+
+	/** Returns true if this avl tree contains key, false otherwise. */
+	public boolean contains(int key) {
+		int n = root;
+		while (n != NIL) {
+			int k = keys[n];
+			if (key == k) {
+				return true;
+			}
+			n = (key < k) ? left[n] : right[n];
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the smallest key in this avl tree.
+	 *
+	 * @throws NoSuchElementException if this avl tree is empty
+	 */
+	public int first() {
+		if (root == NIL) {
+			throw new NoSuchElementException();
+		}
+		int n = root;
+		while (left[n] != NIL) {
+			n = left[n];
+		}
+		return keys[n];
+	}
+
+	/**
+	 * Returns the largest key in this avl tree.
+	 *
+	 * @throws NoSuchElementException if this avl tree is empty
+	 */
+	public int last() {
+		if (root == NIL) {
+			throw new NoSuchElementException();
+		}
+		int n = root;
+		while (right[n] != NIL) {
+			n = right[n];
+		}
+		return keys[n];
+	}
+
+	/** Returns the largest key <= key, if there is one. */
+	public OptionalInt floor(int key) {
+		int n = root;
+		int best = NIL;
+		while (n != NIL) {
+			if (key == keys[n]) {
+				return OptionalInt.of(key);
+			}
+			if (key > keys[n]) {
+				best = n;
+				n = right[n];
+			} else {
+				n = left[n];
+			}
+		}
+		return (best == NIL) ? OptionalInt.empty() : OptionalInt.of(keys[best]);
+	}
+
+	/** Returns the smallest key >= key, if there is one. */
+	public OptionalInt ceiling(int key) {
+		int n = root;
+		int best = NIL;
+		while (n != NIL) {
+			if (key == keys[n]) {
+				return OptionalInt.of(key);
+			}
+			if (key < keys[n]) {
+				best = n;
+				n = left[n];
+			} else {
+				n = right[n];
+			}
+		}
+		return (best == NIL) ? OptionalInt.empty() : OptionalInt.of(keys[best]);
+	}
+
+
+
+	//////////////////
+	//   Freezing   //
+	//////////////////
+
+	/**
+	 * Returns an immutable copy of this avl tree laid out in a single
+	 * cache-friendly array, for read-mostly lookups.
+	 */
+	public IntEytzingerSet freeze() {
+		return new IntEytzingerSet(iterator(), size);
+	}
+
+
+
+	//////////////////////////////////
+	//   toString and traversals    //
+	//////////////////////////////////
+
+	/**
+	 * Returns a string representation of the keys in this avl tree listed in
+	 * ascending order.
+	 */
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("[");
+		for (PrimitiveIterator.OfInt it = iterator(); it.hasNext(); ) {
+			sb.append(it.nextInt());
+			if (it.hasNext()) {
+				sb.append(", ");
+			}
+		}
+		return sb.append(']').toString();
+	}
+
+
+
+	////////////////////
+	//   Iteration    //
+	////////////////////
+
+	/**
+	 * Returns an iterator over the keys in this avl tree in ascending order.
+	 * The iterator walks the arrays directly and does not box keys.
+	 */
+	public PrimitiveIterator.OfInt iterator() {
+		return new PrimitiveIterator.OfInt() {
+			private final int[] stack = new int[MAX_HEIGHT];
+			private int depth = pushLeftSpine(root, stack, 0);
+
+			@Override
+			public boolean hasNext() {
+				return depth > 0;
+			}
+
+			@Override
+			public int nextInt() {
+				if (depth == 0) {
+					throw new NoSuchElementException();
+				}
+				int n = stack[--depth];
+				depth = pushLeftSpine(right[n], stack, depth);
+				return keys[n];
+			}
+		};
+	}
+
+	/** Pushes n and its chain of left children, returning the new stack depth. */
+	private int pushLeftSpine(int n, int[] stack, int depth) {
+		while (n != NIL) {
+			stack[depth++] = n;
+			n = left[n];
+		}
+		return depth;
+	}
+
+}
@@ -0,0 +1,120 @@
+import java.util.NoSuchElementException;
+import java.util.OptionalInt;
+import java.util.PrimitiveIterator;
+
+/**
+ * Provides an immutable sorted set of int keys laid out in Eytzinger order:
+ * the root is at index 1 and the children of index k are at 2k and 2k + 1.
+ * Keys are stored inline, so the top levels of every search sit in the
+ * same few cache lines and each step computes the next index instead of
+ * branching on the comparison.
+ */
+public class IntEytzingerSet {
+
+	// the keys in Eytzinger order; index 0 is unused
+	private final int[] layout;
+
+	// the number of keys in this set
+	private final int size;
+
+	/**
+	 * Constructs a set from the first size keys produced by sorted, which
+	 * must be distinct and in ascending order.
+	 */
+	public IntEytzingerSet(PrimitiveIterator.OfInt sorted, int size) {
+		this.size = size;
+		this.layout = new int[size + 1];
+		for (int k = firstIndex(); k != 0; k = nextIndex(k)) {
+			layout[k] = sorted.nextInt();
+		}
+	}
+
+	/** Returns the number of keys in this set. */
+	public int size() {
+		return size;
+	}
+
+	/** Returns true if this set is empty, false otherwise. */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/** Returns true if this set contains key, false otherwise. */
+	public boolean contains(int key) {
+		int k = ceilingIndex(key);
+		return k != 0 && layout[k] == key;
+	}
+
+	/** Returns the smallest key >= key, if there is one. */
+	public OptionalInt ceiling(int key) {
+		int k = ceilingIndex(key);
+		return (k == 0) ? OptionalInt.empty() : OptionalInt.of(layout[k]);
+	}
+
+	/** Returns the largest key <= key, if there is one. */
+	public OptionalInt floor(int key) {
+		int k = 1;
+		while (k <= size) {
+			k = 2 * k + (layout[k] <= key ? 1 : 0);
+		}
+		// drop the trailing left turns and the right turn before them
+		k >>>= Integer.numberOfTrailingZeros(k) + 1;
+		return (k == 0) ? OptionalInt.empty() : OptionalInt.of(layout[k]);
+	}
+
+	/** Returns the index of the smallest key >= key, or 0 if there is none. */
+	private int ceilingIndex(int key) {
+		int k = 1;
+		while (k <= size) {
+			k = 2 * k + (layout[k] < key ? 1 : 0);
+		}
+		// drop the trailing right turns and the left turn before them
+		return k >>> (Integer.numberOfTrailingZeros(~k) + 1);
+	}
+
+	/** Returns the index of the smallest key, or 0 if this set is empty. */
+	private int firstIndex() {
+		if (size == 0) {
+			return 0;
+		}
+		int k = 1;
+		while (2 * k <= size) {
+			k = 2 * k;
+		}
+		return k;
+	}
+
+	/** Returns the index of the in-order successor of index k, or 0 if there is none. */
+	private int nextIndex(int k) {
+		if (2 * k + 1 <= size) {
+			k = 2 * k + 1;
+			while (2 * k <= size) {
+				k = 2 * k;
+			}
+			return k;
+		}
+		return k >>> (Integer.numberOfTrailingZeros(~k) + 1);
+	}
+
+	/** Returns an iterator over the keys of this set in ascending order. */
+	public PrimitiveIterator.OfInt iterator() {
+		return new PrimitiveIterator.OfInt() {
+			private int k = firstIndex();
+
+			@Override
+			public boolean hasNext() {
+				return k != 0;
+			}
+
+			@Override
+			public int nextInt() {
+				if (k == 0) {
+					throw new NoSuchElementException();
+				}
+				int key = layout[k];
+				k = nextIndex(k);
+				return key;
+			}
+		};
+	}
+}
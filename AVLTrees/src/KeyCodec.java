@@ -0,0 +1,115 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Defines how keys are encoded in a tree snapshot file.
+ */
+public interface KeyCodec<T> {
+
+	/**
+	 * Returns the encoded size in bytes shared by every key, or -1 if the
+	 * size varies from key to key.
+	 */
+	int width();
+
+	/** Returns the encoded size of key in bytes. */
+	int length(T key);
+
+	/** Writes key at the current position of out, advancing the position. */
+	void write(T key, ByteBuffer out);
+
+	/** Reads the key stored in the length bytes at offset in in. */
+	T read(ByteBuffer in, int offset, int length);
+
+	/** Encodes Integer keys as 4 bytes. */
+	KeyCodec<Integer> INTEGER = new KeyCodec<Integer>() {
+		@Override
+		public int width() {
+			return Integer.BYTES;
+		}
+
+		@Override
+		public int length(Integer key) {
+			return Integer.BYTES;
+		}
+
+		@Override
+		public void write(Integer key, ByteBuffer out) {
+			out.putInt(key);
+		}
+
+		@Override
+		public Integer read(ByteBuffer in, int offset, int length) {
+			return in.getInt(offset);
+		}
+	};
+
+	/** Encodes Long keys as 8 bytes. */
+	KeyCodec<Long> LONG = new KeyCodec<Long>() {
+		@Override
+		public int width() {
+			return Long.BYTES;
+		}
+
+		@Override
+		public int length(Long key) {
+			return Long.BYTES;
+		}
+
+		@Override
+		public void write(Long key, ByteBuffer out) {
+			out.putLong(key);
+		}
+
+		@Override
+		public Long read(ByteBuffer in, int offset, int length) {
+			return in.getLong(offset);
+		}
+	};
+
+	/** Encodes String keys as UTF-8 bytes. */
+	KeyCodec<String> STRING = new KeyCodec<String>() {
+		@Override
+		public int width() {
+			return -1;
+		}
+
+		/**
+		 * Counts the UTF-8 bytes without encoding. An unpaired surrogate
+		 * counts as the one byte '?' that the encoder replaces it with.
+		 */
+		@Override
+		public int length(String key) {
+			int bytes = 0;
+			for (int i = 0; i < key.length(); i++) {
+				char c = key.charAt(i);
+				if (c < 0x80) {
+					bytes += 1;
+				} else if (c < 0x800) {
+					bytes += 2;
+				} else if (Character.isHighSurrogate(c) && i + 1 < key.length()
+						&& Character.isLowSurrogate(key.charAt(i + 1))) {
+					bytes += 4;
+					i++;
+				} else if (Character.isSurrogate(c)) {
+					bytes += 1;
+				} else {
+					bytes += 3;
+				}
+			}
+			return bytes;
+		}
+
+		@Override
+		public void write(String key, ByteBuffer out) {
+			out.put(key.getBytes(StandardCharsets.UTF_8));
+		}
+
+		@Override
+		public String read(ByteBuffer in, int offset, int length) {
+			byte[] bytes = new byte[length];
+			in.get(offset, bytes);
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+	};
+}
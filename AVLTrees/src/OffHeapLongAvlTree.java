@@ -0,0 +1,462 @@
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Provides an AVL tree of long keys whose nodes live outside the Java heap.
+ * Nodes are fixed-width records in direct ByteBuffer chunks and refer to
+ * their children by int index, so the collector sees only the chunk
+ * references no matter how many keys the tree holds. Each node also records
+ * the size of its subtree to support rank queries. Not safe for use by
+ * multiple threads.
+ *
+ * <p>Each node takes 24 bytes, so a hundred million keys need about 2.4 GB
+ * of direct memory. The JVM caps direct memory with
+ * -XX:MaxDirectMemorySize, which defaults to the maximum heap size, and a
+ * tree that outgrows the cap fails with an OutOfMemoryError. Trees of
+ * hundreds of millions of keys therefore need that flag raised, for
+ * example -XX:MaxDirectMemorySize=16g. Since the heap stays flat, the
+ * collector may not run for a long time, so close the tree to return its
+ * storage rather than waiting for the chunks to be collected.
+ */
+public class OffHeapLongAvlTree implements AutoCloseable {
+
+
+	/////////////////
+	//   Fields    //
+	/////////////////
+
+	// the index used for an empty subtree
+	private static final int NIL = 0;
+
+	// enough path entries for any avl tree addressable by int indices
+	private static final int MAX_HEIGHT = 64;
+
+	// each chunk holds 2^CHUNK_BITS nodes
+	private static final int CHUNK_BITS = 16;
+	private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+
+	// node record layout, in bytes
+	private static final int KEY = 0;
+	private static final int LEFT = 8;
+	private static final int RIGHT = 12;
+	private static final int HEIGHT = 16;
+	private static final int SIZE = 20;
+	private static final int NODE_BYTES = 24;
+
+	// frees a direct buffer at once, or is null if this JVM offers no way to
+	private static final MethodHandle INVOKE_CLEANER = invokeCleaner();
+
+	// the off-heap node storage; only the first chunkCount entries are in use
+	private ByteBuffer[] chunks = new ByteBuffer[1];
+
+	// the number of chunks allocated so far
+	private int chunkCount;
+
+	// the root of this avl tree
+	private int root = NIL;
+
+	// the number of node slots handed out so far, including the NIL slot
+	private int allocated;
+
+	// scratch space for the path walked by add
+	private final int[] path = new int[MAX_HEIGHT];
+
+	/** Constructs an empty tree, reserving slot 0 as NIL. */
+	public OffHeapLongAvlTree() {
+		allocate(0L);
+		setHeight(NIL, 0);
+		setSize(NIL, 0);
+	}
+
+
+	///////////////////////////
+	//   Node record access  //
+	///////////////////////////
+
+	/** Returns the chunk holding node n. */
+	private ByteBuffer chunk(int n) {
+		return chunks[n >>> CHUNK_BITS];
+	}
+
+	/** Returns the byte offset of node n within its chunk. */
+	private int offset(int n) {
+		return (n & CHUNK_MASK) * NODE_BYTES;
+	}
+
+	// getters and setters for the fields of a node record
+
+	private long key(int n) {
+		return chunk(n).getLong(offset(n) + KEY);
+	}
+
+	private int left(int n) {
+		return chunk(n).getInt(offset(n) + LEFT);
+	}
+
+	private int right(int n) {
+		return chunk(n).getInt(offset(n) + RIGHT);
+	}
+
+	private int height(int n) {
+		return chunk(n).getInt(offset(n) + HEIGHT);
+	}
+
+	private int size(int n) {
+		return chunk(n).getInt(offset(n) + SIZE);
+	}
+
+	private void setLeft(int n, int child) {
+		chunk(n).putInt(offset(n) + LEFT, child);
+	}
+
+	private void setRight(int n, int child) {
+		chunk(n).putInt(offset(n) + RIGHT, child);
+	}
+
+	private void setHeight(int n, int height) {
+		chunk(n).putInt(offset(n) + HEIGHT, height);
+	}
+
+	private void setSize(int n, int size) {
+		chunk(n).putInt(offset(n) + SIZE, size);
+	}
+
+	/** Returns a fresh leaf holding key, adding a chunk if needed. */
+	private int allocate(long key) {
+		if (allocated == Integer.MAX_VALUE) {
+			throw new IllegalStateException();
+		}
+		int n = allocated++;
+		if ((n >>> CHUNK_BITS) == chunkCount) {
+			if (chunkCount == chunks.length) {
+				chunks = Arrays.copyOf(chunks, 2 * chunkCount);
+			}
+			chunks[chunkCount++] = ByteBuffer.allocateDirect(NODE_BYTES << CHUNK_BITS)
+					.order(ByteOrder.nativeOrder());
+		}
+		ByteBuffer chunk = chunk(n);
+		int offset = offset(n);
+		chunk.putLong(offset + KEY, key);
+		chunk.putInt(offset + LEFT, NIL);
+		chunk.putInt(offset + RIGHT, NIL);
+		chunk.putInt(offset + HEIGHT, 1);
+		chunk.putInt(offset + SIZE, 1);
+		return n;
+	}
+
+
+	////////////////////////
+	//   Adding values    //
+	////////////////////////
+
+	/**
+	 * Ensures this avl tree contains the specified key.
+	 *
+	 * @return true if key was added, false if it was already present
+	 * @throws IllegalStateException if this tree has been closed
+	 */
+	public boolean add(long key) {
+		ensureOpen();
+		int depth = 0;
+		int n = root;
+		while (n != NIL) {
+			long k = key(n);
+			if (key == k) {
+				return false;
+			}
+			path[depth++] = n;
+			n = (key < k) ? left(n) : right(n);
+		}
+		// every ancestor gains one descendant, so retrace all the way up
+		int child = allocate(key);
+		for (int i = depth - 1; i >= 0; i--) {
+			n = path[i];
+			if (key < key(n)) {
+				setLeft(n, child);
+			} else {
+				setRight(n, child);
+			}
+			update(n);
+			child = rebalance(n);
+		}
+		root = child;
+		return true;
+	}
+
+
+
+	/////////////////////////////////
+	//   Rebalancing operations    //
+	/////////////////////////////////
+
+	/** Rebalance the 3-node neighborhood rooted at n, if needed. */
+	private int rebalance(int n) {
+		if (balanceFactor(n) == 2) {
+			if (balanceFactor(right(n)) < 0) {
+				setRight(n, rotateRight(right(n)));
+			}
+			n = rotateLeft(n);
+		} else if (balanceFactor(n) == -2) {
+			if (balanceFactor(left(n)) > 0) {
+				setLeft(n, rotateLeft(left(n)));
+			}
+			n = rotateRight(n);
+		}
+		return n;
+	}
+
+	/** Rotate left over n. */
+	private int rotateLeft(int n) {
+		int m = right(n);
+		setRight(n, left(m));
+		setLeft(m, n);
+		update(n);
+		update(m);
+		return m;
+	}
+
+	/** Rotate right over n. */
+	private int rotateRight(int n) {
+		int m = left(n);
+		setLeft(n, right(m));
+		setRight(m, n);
+		update(n);
+		update(m);
+		return m;
+	}
+
+	/** Returns the balance factor of n. */
+	private int balanceFactor(int n) {
+		return height(right(n)) - height(left(n));
+	}
+
+	/** Recomputes the height and subtree size of n from its children. */
+	private void update(int n) {
+		int l = left(n);
+		int r = right(n);
+		setHeight(n, 1 + Math.max(height(l), height(r)));
+		setSize(n, 1 + size(l) + size(r));
+	}
+
+
+
+	//////////////////////////////
+	//   Metrics on the tree    //
+	//////////////////////////////
+
+	/** Returns the number of values in this avl tree. */
+	public int size() {
+		ensureOpen();
+		return size(root);
+	}
+
+	/** Returns true if this avl tree is empty, false otherwise. */
+	public boolean isEmpty() {
+		ensureOpen();
+		return root == NIL;
+	}
+
+	/** Returns the height of this avl tree. */
+	public int height() {
+		ensureOpen();
+		return height(root);
+	}
+
+	/** Returns the number of bytes of off-heap storage reserved by this tree. */
+	public long offHeapBytes() {
+		return (long) chunkCount * (NODE_BYTES << CHUNK_BITS);
+	}
+
+
+
+	/////////////////////
+	//   Searching     //
+	/////////////////////
+
+	/** Returns true if this avl tree contains key, false otherwise. */
+	public boolean contains(long key) {
+		ensureOpen();
+		int n = root;
+		while (n != NIL) {
+			long k = key(n);
+			if (key == k) {
+				return true;
+			}
+			n = (key < k) ? left(n) : right(n);
+		}
+		return false;
+	}
+
+	/** Returns the number of keys in this avl tree that are less than key. */
+	public int rank(long key) {
+		ensureOpen();
+		int rank = 0;
+		int n = root;
+		while (n != NIL) {
+			if (key <= key(n)) {
+				n = left(n);
+			} else {
+				rank += size(left(n)) + 1;
+				n = right(n);
+			}
+		}
+		return rank;
+	}
+
+	/**
+	 * Returns the key with the given rank, that is, the key that has exactly
+	 * index smaller keys in this avl tree.
+	 *
+	 * @throws IndexOutOfBoundsException if index is negative or not less than size()
+	 */
+	public long select(int index) {
+		ensureOpen();
+		if (index < 0 || index >= size()) {
+			throw new IndexOutOfBoundsException();
+		}
+		int n = root;
+		while (true) {
+			int leftSize = size(left(n));
+			if (index < leftSize) {
+				n = left(n);
+			} else if (index > leftSize) {
+				index -= leftSize + 1;
+				n = right(n);
+			} else {
+				return key(n);
+			}
+		}
+	}
+
+
+
+	/////////////////
+	//   Closing   //
+	/////////////////
+
+	/**
+	 * Frees the off-heap storage of this tree immediately instead of leaving
+	 * it to the collector. Every later operation, including on iterators
+	 * made earlier, throws IllegalStateException. Closing again does
+	 * nothing.
+	 */
+	@Override
+	public void close() {
+		if (chunks == null) {
+			return;
+		}
+		ByteBuffer[] retired = chunks;
+		int count = chunkCount;
+		chunks = null;
+		chunkCount = 0;
+		root = NIL;
+		allocated = 0;
+		if (INVOKE_CLEANER == null) {
+			return;
+		}
+		for (int i = 0; i < count; i++) {
+			try {
+				INVOKE_CLEANER.invokeExact(retired[i]);
+			} catch (Throwable e) {
+				// leave the rest to the collector
+				return;
+			}
+		}
+	}
+
+	/** Throws IllegalStateException if this tree has been closed. */
+	private void ensureOpen() {
+		if (chunks == null) {
+			throw new IllegalStateException("tree is closed");
+		}
+	}
+
+	/**
+	 * Returns a handle on sun.misc.Unsafe.invokeCleaner bound to the Unsafe
+	 * instance, the only way to free a direct buffer on demand before
+	 * Java 19, or null if the running JVM does not provide it.
+	 */
+	private static MethodHandle invokeCleaner() {
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			return MethodHandles.lookup()
+					.findVirtual(unsafeClass, "invokeCleaner",
+							MethodType.methodType(void.class, ByteBuffer.class))
+					.bindTo(theUnsafe.get(null));
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return null;
+		}
+	}
+
+
+
+	//////////////////////////////////
+	//   toString and traversals    //
+	//////////////////////////////////
+
+	/**
+	 * Returns a string representation of the keys in this avl tree listed in
+	 * ascending order.
+	 */
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("[");
+		for (PrimitiveIterator.OfLong it = iterator(); it.hasNext(); ) {
+			sb.append(it.nextLong());
+			if (it.hasNext()) {
+				sb.append(", ");
+			}
+		}
+		return sb.append(']').toString();
+	}
+
+
+
+	////////////////////
+	//   Iteration    //
+	////////////////////
+
+	/** Returns an iterator over the keys in this avl tree in ascending order. */
+	public PrimitiveIterator.OfLong iterator() {
+		ensureOpen();
+		return new PrimitiveIterator.OfLong() {
+			private final int[] stack = new int[MAX_HEIGHT];
+			private int depth = pushLeftSpine(root, stack, 0);
+
+			@Override
+			public boolean hasNext() {
+				return depth > 0;
+			}
+
+			@Override
+			public long nextLong() {
+				if (depth == 0) {
+					throw new NoSuchElementException();
+				}
+				ensureOpen();
+				int n = stack[--depth];
+				depth = pushLeftSpine(right(n), stack, depth);
+				return key(n);
+			}
+		};
+	}
+
+	/** Pushes n and its chain of left children, returning the new stack depth. */
+	private int pushLeftSpine(int n, int[] stack, int depth) {
+		while (n != NIL) {
+			stack[depth++] = n;
+			n = left(n);
+		}
+		return depth;
+	}
+
+}
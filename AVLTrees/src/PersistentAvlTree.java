@@ -0,0 +1,401 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Provides a persistent (immutable) AVL tree. Nodes are never modified once
+ * built; each update copies only the O(log n) path from the root to the
+ * changed node and then publishes the new root atomically. Readers work from
+ * a Snapshot, which stays consistent and safe to iterate no matter what
+ * writers do afterwards, and which needs no locking.
+ */
+public class PersistentAvlTree<T extends Comparable<T>> implements Iterable<T> {
+
+
+	/////////////////
+	//   Fields    //
+	/////////////////
+
+	// the most recently published version of this tree
+	private final AtomicReference<Snapshot<T>> current =
+			new AtomicReference<>(new Snapshot<>(null, 0));
+
+	/** The immutable Node structure for this tree. */
+	private static final class Node<T> {
+		private final T element;
+		private final Node<T> left;
+		private final Node<T> right;
+		private final int height;
+
+		/** Constructs a node containing element over the given subtrees. */
+		Node(Node<T> left, T element, Node<T> right) {
+			this.element = element;
+			this.left = left;
+			this.right = right;
+			this.height = 1 + Math.max(height(left), height(right));
+		}
+	}
+
+
+	////////////////////
+	//   Snapshots    //
+	////////////////////
+
+	/**
+	 * Returns the current version of this tree. The snapshot never changes,
+	 * regardless of later updates to this tree.
+	 */
+	public Snapshot<T> snapshot() {
+		return current.get();
+	}
+
+	/** An immutable version of a persistent avl tree. */
+	public static final class Snapshot<T extends Comparable<T>> implements Iterable<T> {
+		private final Node<T> root;
+		private final int size;
+
+		/** Constructs a snapshot of the tree rooted at root. */
+		private Snapshot(Node<T> root, int size) {
+			this.root = root;
+			this.size = size;
+		}
+
+		/** Returns the number of values in this snapshot. */
+		public int size() {
+			return size;
+		}
+
+		/** Returns true if this snapshot is empty, false otherwise. */
+		public boolean isEmpty() {
+			return size == 0;
+		}
+
+		/** Returns the height of this snapshot. */
+		public int height() {
+			return PersistentAvlTree.height(root);
+		}
+
+		/** Returns true if this snapshot contains element, false otherwise. */
+		public boolean contains(T element) {
+			Node<T> n = root;
+			while (n != null) {
+				int cmp = element.compareTo(n.element);
+				if (cmp < 0) {
+					n = n.left;
+				} else if (cmp > 0) {
+					n = n.right;
+				} else {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * Returns the smallest element in this snapshot.
+		 *
+		 * @throws NoSuchElementException if this snapshot is empty
+		 */
+		public T first() {
+			if (root == null) {
+				throw new NoSuchElementException();
+			}
+			Node<T> n = root;
+			while (n.left != null) {
+				n = n.left;
+			}
+			return n.element;
+		}
+
+		/**
+		 * Returns the largest element in this snapshot.
+		 *
+		 * @throws NoSuchElementException if this snapshot is empty
+		 */
+		public T last() {
+			if (root == null) {
+				throw new NoSuchElementException();
+			}
+			Node<T> n = root;
+			while (n.right != null) {
+				n = n.right;
+			}
+			return n.element;
+		}
+
+		/** Returns the largest element <= element, or null if there is none. */
+		public T floor(T element) {
+			Node<T> n = root;
+			T best = null;
+			while (n != null) {
+				int cmp = element.compareTo(n.element);
+				if (cmp == 0) {
+					return n.element;
+				}
+				if (cmp > 0) {
+					best = n.element;
+					n = n.right;
+				} else {
+					n = n.left;
+				}
+			}
+			return best;
+		}
+
+		/** Returns the smallest element >= element, or null if there is none. */
+		public T ceiling(T element) {
+			Node<T> n = root;
+			T best = null;
+			while (n != null) {
+				int cmp = element.compareTo(n.element);
+				if (cmp == 0) {
+					return n.element;
+				}
+				if (cmp < 0) {
+					best = n.element;
+					n = n.left;
+				} else {
+					n = n.right;
+				}
+			}
+			return best;
+		}
+
+		/**
+		 * Returns an iterator over the values in this snapshot in ascending
+		 * natural order. Since nodes are immutable, nothing is copied.
+		 */
+		@Override
+		public Iterator<T> iterator() {
+			return new InorderIterator<>(root);
+		}
+
+		/**
+		 * Returns a string representation of the elements in this snapshot
+		 * listed in ascending natural order.
+		 */
+		@Override
+		public String toString() {
+			List<T> list = new ArrayList<>();
+			for (T element : this) {
+				list.add(element);
+			}
+			return list.toString();
+		}
+	}
+
+
+	////////////////////////////////////
+	//   Adding and removing values   //
+	////////////////////////////////////
+
+	/**
+	 * Ensures this tree contains the specified element. Safe to call from
+	 * any number of threads; concurrent writers retry until their update is
+	 * published on top of the latest version.
+	 *
+	 * @return true if element was added, false if it was already present
+	 */
+	public boolean add(T element) {
+		while (true) {
+			Snapshot<T> before = current.get();
+			Node<T> root = insert(before.root, element);
+			if (root == before.root) {
+				return false;
+			}
+			if (current.compareAndSet(before, new Snapshot<>(root, before.size + 1))) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Ensures this tree does not contain the specified element.
+	 *
+	 * @return true if element was removed, false if it was not present
+	 */
+	public boolean remove(T element) {
+		while (true) {
+			Snapshot<T> before = current.get();
+			Node<T> root = delete(before.root, element);
+			if (root == before.root) {
+				return false;
+			}
+			if (current.compareAndSet(before, new Snapshot<>(root, before.size - 1))) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Returns the root of a copy of subtree n that also contains element,
+	 * or n itself if element is already present.
+	 */
+	private static <T extends Comparable<T>> Node<T> insert(Node<T> n, T element) {
+		if (n == null) {
+			return new Node<>(null, element, null);
+		}
+		int cmp = element.compareTo(n.element);
+		if (cmp < 0) {
+			Node<T> left = insert(n.left, element);
+			return (left == n.left) ? n : balance(left, n.element, n.right);
+		} else if (cmp > 0) {
+			Node<T> right = insert(n.right, element);
+			return (right == n.right) ? n : balance(n.left, n.element, right);
+		}
+		return n;
+	}
+
+	/**
+	 * Returns the root of a copy of subtree n without element, or n itself
+	 * if element is not present.
+	 */
+	private static <T extends Comparable<T>> Node<T> delete(Node<T> n, T element) {
+		if (n == null) {
+			return null;
+		}
+		int cmp = element.compareTo(n.element);
+		if (cmp < 0) {
+			Node<T> left = delete(n.left, element);
+			return (left == n.left) ? n : balance(left, n.element, n.right);
+		} else if (cmp > 0) {
+			Node<T> right = delete(n.right, element);
+			return (right == n.right) ? n : balance(n.left, n.element, right);
+		}
+		if (n.left == null) {
+			return n.right;
+		}
+		if (n.right == null) {
+			return n.left;
+		}
+		Node<T> successor = n.right;
+		while (successor.left != null) {
+			successor = successor.left;
+		}
+		return balance(n.left, successor.element, deleteFirst(n.right));
+	}
+
+	/** Returns the root of a copy of subtree n without its smallest element. */
+	private static <T> Node<T> deleteFirst(Node<T> n) {
+		if (n.left == null) {
+			return n.right;
+		}
+		return balance(deleteFirst(n.left), n.element, n.right);
+	}
+
+
+
+	/////////////////////////////////
+	//   Rebalancing operations    //
+	/////////////////////////////////
+
+	/**
+	 * Returns a new node holding element over left and right, rotating as
+	 * needed to restore the AVL balance condition.
+	 */
+	private static <T> Node<T> balance(Node<T> left, T element, Node<T> right) {
+		int balanceFactor = height(right) - height(left);
+		if (balanceFactor == 2) {
+			if (height(right.right) < height(right.left)) {
+				right = rotateRight(right);
+			}
+			return rotateLeft(new Node<>(left, element, right));
+		} else if (balanceFactor == -2) {
+			if (height(left.left) < height(left.right)) {
+				left = rotateLeft(left);
+			}
+			return rotateRight(new Node<>(left, element, right));
+		}
+		return new Node<>(left, element, right);
+	}
+
+	/** Returns a rotated-left copy of n. */
+	private static <T> Node<T> rotateLeft(Node<T> n) {
+		Node<T> m = n.right;
+		return new Node<>(new Node<>(n.left, n.element, m.left), m.element, m.right);
+	}
+
+	/** Returns a rotated-right copy of n. */
+	private static <T> Node<T> rotateRight(Node<T> n) {
+		Node<T> m = n.left;
+		return new Node<>(m.left, m.element, new Node<>(m.right, n.element, n.right));
+	}
+
+	/** Returns the height of the given node. */
+	private static int height(Node<?> n) {
+		if (n == null) {
+			return 0;
+		}
+		return n.height;
+	}
+
+
+
+	//////////////////////////////
+	//   Reading the tree       //
+	//////////////////////////////
+
+	/** Returns the number of values in the current version of this tree. */
+	public int size() {
+		return snapshot().size();
+	}
+
+	/** Returns the height of the current version of this tree. */
+	public int height() {
+		return snapshot().height();
+	}
+
+	/** Returns true if the current version of this tree contains element. */
+	public boolean contains(T element) {
+		return snapshot().contains(element);
+	}
+
+	/** Returns a string representation of the current version of this tree. */
+	@Override
+	public String toString() {
+		return snapshot().toString();
+	}
+
+	/**
+	 * Returns an iterator over the current version of this tree. The
+	 * iterator is unaffected by later updates.
+	 */
+	@Override
+	public Iterator<T> iterator() {
+		return snapshot().iterator();
+	}
+
+	/** Walks an immutable subtree in order, keeping the pending left spine on a stack. */
+	private static final class InorderIterator<T> implements Iterator<T> {
+		private final Deque<Node<T>> stack = new ArrayDeque<>();
+
+		/** Positions this iterator at the smallest element under root. */
+		InorderIterator(Node<T> root) {
+			for (Node<T> n = root; n != null; n = n.left) {
+				stack.push(n);
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return !stack.isEmpty();
+		}
+
+		@Override
+		public T next() {
+			if (stack.isEmpty()) {
+				throw new NoSuchElementException();
+			}
+			Node<T> n = stack.pop();
+			for (Node<T> m = n.right; m != null; m = m.left) {
+				stack.push(m);
+			}
+			return n.element;
+		}
+	}
+
+}
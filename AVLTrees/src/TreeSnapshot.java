@@ -0,0 +1,446 @@
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Provides a compact binary snapshot of a search tree and a read-only view
+ * that serves queries straight from the memory-mapped snapshot file.
+ *
+ * <p>A snapshot holds the keys in ascending order, optionally preceded by the
+ * height of each node in the same order. Since the root of any subtree is
+ * its unique tallest node, those heights are enough to rebuild the exact
+ * shape of the tree in a single O(n) pass. The layout is:
+ * <pre>
+ *   header   magic, version, key width (-1 if variable), count, flags
+ *   heights  one byte per key, in order (only if flags has SHAPE)
+ *   offsets  count + 1 ints into the key section (only if width is -1)
+ *   keys     the encoded keys, in order
+ * </pre>
+ * Sections start on 8-byte boundaries. Files are limited to 2 GB, the most
+ * a single mapping can cover.
+ */
+public final class TreeSnapshot<T extends Comparable<T>> implements Iterable<T> {
+
+	// identifies a snapshot file ("AVLS")
+	private static final int MAGIC = 0x41564C53;
+
+	// the current format version
+	private static final int VERSION = 1;
+
+	// the flag marking a snapshot that records node heights
+	private static final int SHAPE = 1;
+
+	// the size of the header in bytes
+	private static final int HEADER_BYTES = 24;
+
+	// the size of the buffer used when writing
+	private static final int BUFFER_BYTES = 1 << 16;
+
+	// the mapped snapshot file
+	private final ByteBuffer data;
+
+	// the codec for the keys in this snapshot
+	private final KeyCodec<T> codec;
+
+	// the number of keys in this snapshot
+	private final int size;
+
+	// the start of each section, or -1 for a section that is absent
+	private final int heightsStart;
+	private final int offsetsStart;
+	private final int keysStart;
+
+
+	/////////////////
+	//   Writing   //
+	/////////////////
+
+	/**
+	 * Writes a snapshot of count keys to file, replacing any existing file.
+	 * The keys are streamed through a small buffer, never held in memory as
+	 * a whole.
+	 *
+	 * @param inorder the keys in ascending order; iterated twice for
+	 *     variable-width codecs
+	 * @param heights the height of each node in in-order sequence, or null
+	 *     to record the keys only
+	 * @throws IOException if file cannot be written, or if the snapshot would
+	 *     exceed 2 GB, in which case file is left untouched
+	 * @throws IllegalStateException if codec writes a key in a different
+	 *     number of bytes than its width or length reported, which would
+	 *     shift every later key; file is left incomplete
+	 */
+	public static <T extends Comparable<T>> void write(Path file, KeyCodec<T> codec,
+			Iterable<? extends T> inorder, int count, byte[] heights) throws IOException {
+		// size every section before touching the file, measuring each
+		// variable-width key once
+		int[] lengths = null;
+		long keyBytes;
+		if (codec.width() < 0) {
+			lengths = new int[count];
+			keyBytes = 0;
+			int i = 0;
+			for (T key : inorder) {
+				lengths[i] = codec.length(key);
+				keyBytes += lengths[i++];
+			}
+		} else {
+			keyBytes = (long) count * codec.width();
+		}
+		long total = keysStart(count, heights != null, codec.width()) + keyBytes;
+		if (total > Integer.MAX_VALUE) {
+			throw new IOException("snapshot of " + total + " bytes exceeds 2 GB: " + file);
+		}
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+			buffer.putInt(MAGIC);
+			buffer.putInt(VERSION);
+			buffer.putInt(codec.width());
+			buffer.putInt(count);
+			buffer.putInt((heights != null) ? SHAPE : 0);
+			pad(buffer, channel);
+
+			if (heights != null) {
+				for (int i = 0; i < count; i++) {
+					ensureRoom(buffer, channel, 1);
+					buffer.put(heights[i]);
+				}
+				pad(buffer, channel);
+			}
+
+			if (lengths != null) {
+				int offset = 0;
+				ensureRoom(buffer, channel, Integer.BYTES);
+				buffer.putInt(offset);
+				for (int length : lengths) {
+					offset += length;
+					ensureRoom(buffer, channel, Integer.BYTES);
+					buffer.putInt(offset);
+				}
+				pad(buffer, channel);
+			}
+
+			int i = 0;
+			for (T key : inorder) {
+				int length = (lengths != null) ? lengths[i++] : codec.width();
+				if (length > buffer.capacity()) {
+					flush(buffer, channel);
+					ByteBuffer large = ByteBuffer.allocate(length);
+					encode(codec, key, large, length);
+					large.flip();
+					writeFully(large, channel);
+				} else {
+					ensureRoom(buffer, channel, length);
+					encode(codec, key, buffer, length);
+				}
+			}
+			flush(buffer, channel);
+		}
+	}
+
+	/**
+	 * Returns the file position where the keys of a snapshot of count keys
+	 * begin, given whether it records shape and the width of its keys.
+	 */
+	private static long keysStart(long count, boolean shape, int width) {
+		long position = HEADER_BYTES;
+		if (shape) {
+			position = align(position + count);
+		}
+		if (width < 0) {
+			position = align(position + (count + 1) * Integer.BYTES);
+		}
+		return position;
+	}
+
+	/**
+	 * Writes key to out with codec, checking that it takes exactly length
+	 * bytes, the amount already reserved for it in the offsets.
+	 *
+	 * @throws IllegalStateException if codec writes any other amount
+	 */
+	private static <T> void encode(KeyCodec<T> codec, T key, ByteBuffer out, int length) {
+		int start = out.position();
+		try {
+			codec.write(key, out);
+		} catch (BufferOverflowException e) {
+			throw new IllegalStateException("codec wrote more than the " + length
+					+ " bytes it reported for key " + key, e);
+		}
+		int written = out.position() - start;
+		if (written != length) {
+			throw new IllegalStateException("codec wrote " + written + " bytes for key "
+					+ key + ", but reported " + length);
+		}
+	}
+
+	/** Flushes buffer first if it has fewer than needed bytes of room left. */
+	private static void ensureRoom(ByteBuffer buffer, FileChannel channel, int needed)
+			throws IOException {
+		if (buffer.remaining() < needed) {
+			flush(buffer, channel);
+		}
+	}
+
+	/** Writes zero bytes until the file position is a multiple of 8. */
+	private static void pad(ByteBuffer buffer, FileChannel channel) throws IOException {
+		long position = channel.position() + buffer.position();
+		while (position % 8 != 0) {
+			ensureRoom(buffer, channel, 1);
+			buffer.put((byte) 0);
+			position++;
+		}
+	}
+
+	/** Writes out and clears the contents of buffer. */
+	private static void flush(ByteBuffer buffer, FileChannel channel) throws IOException {
+		buffer.flip();
+		writeFully(buffer, channel);
+		buffer.clear();
+	}
+
+	/** Writes all remaining bytes of buffer to channel. */
+	private static void writeFully(ByteBuffer buffer, FileChannel channel) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+
+
+	/////////////////
+	//   Reading   //
+	/////////////////
+
+	/**
+	 * Maps the snapshot in file into memory for reading.
+	 *
+	 * @throws IOException if file cannot be read, is not a snapshot, or was
+	 *     written with a codec of a different width
+	 */
+	public static <T extends Comparable<T>> TreeSnapshot<T> open(Path file, KeyCodec<T> codec)
+			throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("snapshot larger than 2 GB: " + file);
+			}
+			MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return new TreeSnapshot<>(data, codec, file);
+		}
+	}
+
+	/**
+	 * Constructs a view over the snapshot held in data, checking that every
+	 * section the header describes lies within the file and, for
+	 * variable-width keys, that every key's bytes do too.
+	 */
+	private TreeSnapshot(ByteBuffer data, KeyCodec<T> codec, Path file) throws IOException {
+		if (data.limit() < HEADER_BYTES || data.getInt(0) != MAGIC) {
+			throw new IOException("not a tree snapshot: " + file);
+		}
+		if (data.getInt(4) != VERSION) {
+			throw new IOException("unsupported snapshot version " + data.getInt(4) + ": " + file);
+		}
+		if (data.getInt(8) != codec.width()) {
+			throw new IOException("snapshot key width does not match codec: " + file);
+		}
+		this.data = data;
+		this.codec = codec;
+		this.size = data.getInt(12);
+		if (size < 0) {
+			throw new IOException("corrupt snapshot, negative key count: " + file);
+		}
+		boolean shape = (data.getInt(16) & SHAPE) != 0;
+		long keys = keysStart(size, shape, codec.width());
+		long keyBytes;
+		if (codec.width() >= 0) {
+			keyBytes = (long) size * codec.width();
+		} else if (keys <= data.limit()) {
+			long offsets = keys - align((size + 1L) * Integer.BYTES);
+			keyBytes = (data.getInt((int) offsets) == 0)
+					? data.getInt((int) (offsets + (long) size * Integer.BYTES)) : -1;
+		} else {
+			keyBytes = 0;
+		}
+		if (keyBytes < 0 || keys + keyBytes > data.limit()) {
+			throw new IOException("truncated or corrupt snapshot: " + file);
+		}
+		heightsStart = shape ? HEADER_BYTES : -1;
+		keysStart = (int) keys;
+		offsetsStart = (codec.width() < 0)
+				? (int) (keys - align((size + 1L) * Integer.BYTES)) : -1;
+		if (offsetsStart >= 0) {
+			checkOffsets(file);
+		}
+	}
+
+	/**
+	 * Checks that the offsets never decrease. The first is 0 and the last
+	 * lies within the file, so every key's bytes then do too. Takes one
+	 * pass over the offsets.
+	 */
+	private void checkOffsets(Path file) throws IOException {
+		int previous = 0;
+		for (int i = 1; i <= size; i++) {
+			int offset = data.getInt(offsetsStart + i * Integer.BYTES);
+			if (offset < previous) {
+				throw new IOException("corrupt snapshot, offset of key " + i
+						+ " is below that of key " + (i - 1) + ": " + file);
+			}
+			previous = offset;
+		}
+	}
+
+	/** Rounds position up to a multiple of 8. */
+	private static long align(long position) {
+		return (position + 7) & ~7L;
+	}
+
+	/** Returns the number of keys in this snapshot. */
+	public int size() {
+		return size;
+	}
+
+	/** Returns true if this snapshot is empty, false otherwise. */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/** Returns true if this snapshot records the shape of the tree. */
+	public boolean hasShape() {
+		return heightsStart >= 0;
+	}
+
+	/**
+	 * Returns the height of the node holding the key at index.
+	 *
+	 * @throws IllegalStateException if this snapshot does not record shape
+	 */
+	public int height(int index) {
+		if (heightsStart < 0) {
+			throw new IllegalStateException();
+		}
+		return data.get(heightsStart + index);
+	}
+
+	/** Returns the key at the given position in ascending order. */
+	public T key(int index) {
+		if (offsetsStart < 0) {
+			int width = codec.width();
+			return codec.read(data, keysStart + index * width, width);
+		}
+		int start = data.getInt(offsetsStart + index * Integer.BYTES);
+		int end = data.getInt(offsetsStart + (index + 1) * Integer.BYTES);
+		return codec.read(data, keysStart + start, end - start);
+	}
+
+
+
+	///////////////////////////
+	//   Read-only queries   //
+	///////////////////////////
+
+	/** Returns true if this snapshot contains key, false otherwise. */
+	public boolean contains(T key) {
+		int i = ceilingIndex(key);
+		return i < size && key(i).compareTo(key) == 0;
+	}
+
+	/** Returns the smallest key >= key, or null if there is none. */
+	public T ceiling(T key) {
+		int i = ceilingIndex(key);
+		return (i < size) ? key(i) : null;
+	}
+
+	/** Returns the largest key <= key, or null if there is none. */
+	public T floor(T key) {
+		int i = ceilingIndex(key);
+		if (i < size && key(i).compareTo(key) == 0) {
+			return key(i);
+		}
+		return (i > 0) ? key(i - 1) : null;
+	}
+
+	/**
+	 * Returns the smallest key in this snapshot.
+	 *
+	 * @throws NoSuchElementException if this snapshot is empty
+	 */
+	public T first() {
+		if (size == 0) {
+			throw new NoSuchElementException();
+		}
+		return key(0);
+	}
+
+	/**
+	 * Returns the largest key in this snapshot.
+	 *
+	 * @throws NoSuchElementException if this snapshot is empty
+	 */
+	public T last() {
+		if (size == 0) {
+			throw new NoSuchElementException();
+		}
+		return key(size - 1);
+	}
+
+	/** Returns the index of the first key >= key, or size if there is none. */
+	private int ceilingIndex(T key) {
+		int lo = 0;
+		int hi = size;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (key(mid).compareTo(key) < 0) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	/** Returns an iterator over the keys in this snapshot in ascending order. */
+	@Override
+	public Iterator<T> iterator() {
+		return new Iterator<T>() {
+			private int next = 0;
+
+			@Override
+			public boolean hasNext() {
+				return next < size;
+			}
+
+			@Override
+			public T next() {
+				if (next >= size) {
+					throw new NoSuchElementException();
+				}
+				return key(next++);
+			}
+		};
+	}
+
+	/**
+	 * Returns a string representation of the keys in this snapshot listed in
+	 * ascending natural order.
+	 */
+	@Override
+	public String toString() {
+		List<T> list = new ArrayList<>();
+		for (T key : this) {
+			list.add(key);
+		}
+		return list.toString();
+	}
+}
@@ -0,0 +1,199 @@
+import java.util.Arrays;
+
+/**
+ * Collects optional counters from an instrumented search tree: compareTo
+ * calls per operation, single and double rotations, nodes allocated, and a
+ * histogram of search depths, where the depth of an operation is the
+ * number of nodes its search visited. Both AvlTree and BinarySearchTree
+ * report here. A tree without statistics attached pays only a null check
+ * at each point it would count. Not safe for use by multiple threads.
+ * Set operations are not counted: their results start with statistics
+ * disabled, and the split and join steps they run record nothing.
+ */
+public final class TreeStatistics {
+
+	/** The kinds of operation counted separately. */
+	public enum Operation { SEARCH, ADD, REMOVE }
+
+	// the initial number of histogram buckets; more are added as needed
+	private static final int INITIAL_DEPTHS = 32;
+
+	// the number of operations of each kind
+	private final long[] operations = new long[Operation.values().length];
+
+	// the number of compareTo calls made by operations of each kind
+	private final long[] comparisonsBy = new long[Operation.values().length];
+
+	// compareTo calls not yet attributed to an operation
+	private long pending;
+
+	// nodes visited by the operation in progress
+	private int visits;
+
+	// rotation and allocation counts
+	private long singleRotations;
+	private long doubleRotations;
+	private long nodesAllocated;
+
+	// depths[d] is the number of operations whose search visited d nodes
+	private long[] depths = new long[INITIAL_DEPTHS];
+
+
+	///////////////////
+	//   Recording   //
+	///////////////////
+
+	/** Counts one compareTo call, to be attributed to the current operation. */
+	void comparison() {
+		pending++;
+	}
+
+	/** Counts one node visited by the search of the current operation. */
+	void visit() {
+		visits++;
+	}
+
+	/**
+	 * Ends an operation whose search visited depth nodes, attributing to it
+	 * every comparison counted since the previous operation ended.
+	 */
+	void operation(Operation op, int depth) {
+		operations[op.ordinal()]++;
+		comparisonsBy[op.ordinal()] += pending;
+		pending = 0;
+		visits = 0;
+		if (depth >= depths.length) {
+			depths = Arrays.copyOf(depths, Math.max(2 * depths.length, depth + 1));
+		}
+		depths[depth]++;
+	}
+
+	/** Ends an operation whose depth is the number of nodes counted by visit. */
+	void operation(Operation op) {
+		operation(op, visits);
+	}
+
+	/** Counts a single rotation, the only kind a treap or splay tree makes. */
+	void singleRotation() {
+		singleRotations++;
+	}
+
+	/** Counts a double rotation. */
+	void doubleRotation() {
+		doubleRotations++;
+	}
+
+	/** Counts one node allocation. */
+	void nodeAllocated() {
+		nodesAllocated++;
+	}
+
+	/** Returns a copy of these statistics that later counting does not change. */
+	TreeStatistics snapshot() {
+		TreeStatistics copy = new TreeStatistics();
+		System.arraycopy(operations, 0, copy.operations, 0, operations.length);
+		System.arraycopy(comparisonsBy, 0, copy.comparisonsBy, 0, comparisonsBy.length);
+		copy.depths = depths.clone();
+		copy.pending = pending;
+		copy.visits = visits;
+		copy.singleRotations = singleRotations;
+		copy.doubleRotations = doubleRotations;
+		copy.nodesAllocated = nodesAllocated;
+		return copy;
+	}
+
+
+
+	/////////////////
+	//   Queries   //
+	/////////////////
+
+	/** Returns the number of operations of the given kind. */
+	public long operations(Operation op) {
+		return operations[op.ordinal()];
+	}
+
+	/** Returns the total number of operations counted. */
+	public long operations() {
+		return Arrays.stream(operations).sum();
+	}
+
+	/** Returns the number of compareTo calls made by operations of the given kind. */
+	public long comparisons(Operation op) {
+		return comparisonsBy[op.ordinal()];
+	}
+
+	/**
+	 * Returns the total number of compareTo calls counted, including any
+	 * made outside the counted operations.
+	 */
+	public long comparisons() {
+		return Arrays.stream(comparisonsBy).sum() + pending;
+	}
+
+	/** Returns the mean number of compareTo calls per operation of the given kind. */
+	public double comparisonsPerOperation(Operation op) {
+		long count = operations(op);
+		return (count == 0) ? 0.0 : (double) comparisons(op) / count;
+	}
+
+	/** Returns the number of single rotations. */
+	public long singleRotations() {
+		return singleRotations;
+	}
+
+	/** Returns the number of double rotations. */
+	public long doubleRotations() {
+		return doubleRotations;
+	}
+
+	/** Returns the number of nodes allocated. */
+	public long nodesAllocated() {
+		return nodesAllocated;
+	}
+
+	/**
+	 * Returns a histogram of search depths, where element d is the number
+	 * of operations whose search visited d nodes. The histogram ends at the
+	 * greatest depth seen.
+	 */
+	public long[] depthHistogram() {
+		return Arrays.copyOf(depths, maxDepth() + 1);
+	}
+
+	/** Returns the mean search depth over all operations. */
+	public double meanDepth() {
+		long count = 0;
+		long total = 0;
+		for (int d = 0; d < depths.length; d++) {
+			count += depths[d];
+			total += d * depths[d];
+		}
+		return (count == 0) ? 0.0 : (double) total / count;
+	}
+
+	/** Returns the greatest search depth seen, or 0 if there were no operations. */
+	public int maxDepth() {
+		for (int d = depths.length - 1; d > 0; d--) {
+			if (depths[d] != 0) {
+				return d;
+			}
+		}
+		return 0;
+	}
+
+	/** Returns a one-line summary of these statistics. */
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (Operation op : Operation.values()) {
+			sb.append(op).append(' ').append(operations(op))
+					.append(String.format(" (%.1f cmp/op), ", comparisonsPerOperation(op)));
+		}
+		sb.append(String.format("depth mean %.1f max %d, ", meanDepth(), maxDepth()));
+		sb.append("rotations ").append(singleRotations).append(" single ")
+				.append(doubleRotations).append(" double, ");
+		sb.append(nodesAllocated).append(" nodes allocated");
+		return sb.toString();
+	}
+}
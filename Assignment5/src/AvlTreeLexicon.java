@@ -0,0 +1,33 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A lexicon backed by the AvlTree in AVLTrees/src, which the Assignment5
+ * build compiles alongside this directory.
+ */
+public class AvlTreeLexicon extends SortedLexicon {
+    private final AvlTree<String> words = new AvlTree<>();
+
+    /**
+     * Adds all of the given words. They are sorted first so that the tree
+     * can take its linear-time bulk build rather than one add per word.
+     */
+    @Override
+    public void addAll(Collection<String> words) {
+        List<String> sorted = new ArrayList<>(words);
+        Collections.sort(sorted);
+        this.words.addAll(sorted);
+    }
+
+    @Override
+    public int size() {
+        return words.size();
+    }
+
+    @Override
+    protected String ceiling(String key) {
+        return words.ceiling(key);
+    }
+}
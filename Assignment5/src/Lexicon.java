@@ -0,0 +1,45 @@
+import java.util.Collection;
+
+/**
+ * A dictionary of words for a word search game. Besides whole-word and
+ * prefix lookup, a lexicon hands out cursors that extend a prefix one board
+ * tile at a time, so a search can give up on a path as soon as no word
+ * begins with the letters collected along it.
+ */
+public interface Lexicon {
+
+    /** Adds all of the given words to this lexicon. */
+    void addAll(Collection<String> words);
+
+    /** Returns the number of words in this lexicon. */
+    int size();
+
+    /** Returns true if word is in this lexicon, false otherwise. */
+    boolean contains(String word);
+
+    /** Returns true if at least one word in this lexicon begins with prefix. */
+    boolean hasPrefix(String prefix);
+
+    /** Returns a cursor positioned at the empty prefix. */
+    Cursor cursor();
+
+    /**
+     * A position in a lexicon: a prefix of at least one of its words.
+     * Cursors are immutable, so a search may step from the same cursor down
+     * several paths without undoing anything.
+     */
+    interface Cursor {
+
+        /**
+         * Returns the cursor for this prefix followed by letters, or null if
+         * no word in the lexicon begins with that longer prefix.
+         */
+        Cursor step(String letters);
+
+        /** Returns true if this prefix is itself a word in the lexicon. */
+        boolean isWord();
+
+        /** Returns the prefix this cursor is positioned at. */
+        String prefix();
+    }
+}
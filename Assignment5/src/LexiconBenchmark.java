@@ -0,0 +1,90 @@
+import java.util.Random;
+
+/**
+ * LexiconBenchmark.java. Provides a rough timing client that compares the
+ * lexicon backends of WordSearchEngine. For each backend it reports the
+ * time to load the word list, the heap the loaded lexicon retains, and how
+ * many random boards per second getAllScorableWords can solve. Build
+ * Assignment5, then run it from the repository root, where
+ * words_small.txt lives:
+ * java -cp Assignment5/target/classes LexiconBenchmark
+ */
+public class LexiconBenchmark {
+
+    // the word list every backend loads
+    private static final String LEXICON_FILE = "words_small.txt";
+
+    // the side length of each random board
+    private static final int BOARD_SIDE = 5;
+
+    // number of random boards solved per trial
+    private static final int BOARDS = 2000;
+
+    // the minimum length of a scorable word
+    private static final int MINIMUM_WORD_LENGTH = 3;
+
+    // number of timed trials per backend; the first is treated as warmup
+    private static final int TRIALS = 3;
+
+    // the letters tiles are drawn from, weighted roughly by English usage
+    private static final String TILES =
+            "AAAAAAAABBCCCDDDDEEEEEEEEEEEEFFGGHHHHHHIIIIIIIJKLLLLMMNNNNNNNOOOOOOOOPPQRRRRRRSSSSSSTTTTTTTTTUUUVWWXYYZ";
+
+    /** Drives execution. */
+    public static void main(String[] args) {
+        String[][] boards = randomBoards(new Random(17));
+        for (int trial = 0; trial < TRIALS; trial++) {
+            String label = (trial == 0) ? "warmup" : "trial " + trial;
+            System.out.println(label);
+            for (WordSearchGameFactory.Backend backend : WordSearchGameFactory.Backend.values()) {
+                run(backend.name(), backend.newLexicon(), boards);
+            }
+        }
+    }
+
+    /** Loads the word list into lexicon and times solving every board with it. */
+    private static void run(String name, Lexicon lexicon, String[][] boards) {
+        long before = usedMemory();
+        long start = System.nanoTime();
+        WordSearchGame game = WordSearchGameFactory.createGame(lexicon);
+        game.loadLexicon(LEXICON_FILE);
+        long loadNanos = System.nanoTime() - start;
+        long retained = usedMemory() - before;
+
+        start = System.nanoTime();
+        long found = 0;
+        for (String[] board : boards) {
+            game.setBoard(board);
+            found += game.getAllScorableWords(MINIMUM_WORD_LENGTH).size();
+        }
+        long solveNanos = System.nanoTime() - start;
+
+        System.out.printf("  %-16s load %5d ms   heap %6d KB   %7.0f boards/s   (%d words, found %d)%n",
+                name, loadNanos / 1_000_000, retained / 1024,
+                boards.length * 1e9 / solveNanos, lexicon.size(), found);
+    }
+
+    /** Returns BOARDS random boards of BOARD_SIDE by BOARD_SIDE tiles. */
+    private static String[][] randomBoards(Random random) {
+        String[][] boards = new String[BOARDS][BOARD_SIDE * BOARD_SIDE];
+        for (String[] board : boards) {
+            for (int i = 0; i < board.length; i++) {
+                board[i] = String.valueOf(TILES.charAt(random.nextInt(TILES.length())));
+            }
+        }
+        return boards;
+    }
+
+    /**
+     * Returns the heap in use after several back-to-back collections, which
+     * is close enough to compare what each loaded lexicon retains. A single
+     * collection can leave the previous backend's words behind.
+     */
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,61 @@
+/**
+ * A lexicon kept in sorted order. Every query reduces to a single ceiling
+ * search: a prefix is valid exactly when the smallest word at or above it
+ * begins with it, and it is also a word when that ceiling is the prefix
+ * itself.
+ */
+public abstract class SortedLexicon implements Lexicon {
+
+    /** Returns the smallest word >= key, or null if there is none. */
+    protected abstract String ceiling(String key);
+
+    /** Returns true if word is in this lexicon, false otherwise. */
+    @Override
+    public boolean contains(String word) {
+        return word.equals(ceiling(word));
+    }
+
+    /** Returns true if at least one word in this lexicon begins with prefix. */
+    @Override
+    public boolean hasPrefix(String prefix) {
+        String word = ceiling(prefix);
+        return word != null && word.startsWith(prefix);
+    }
+
+    /** Returns a cursor positioned at the empty prefix. */
+    @Override
+    public Lexicon.Cursor cursor() {
+        return new Cursor("", false);
+    }
+
+    /** A prefix together with whether it is itself a word. */
+    private final class Cursor implements Lexicon.Cursor {
+        private final String prefix;
+        private final boolean word;
+
+        Cursor(String prefix, boolean word) {
+            this.prefix = prefix;
+            this.word = word;
+        }
+
+        @Override
+        public Lexicon.Cursor step(String letters) {
+            String next = prefix + letters;
+            String found = ceiling(next);
+            if (found == null || !found.startsWith(next)) {
+                return null;
+            }
+            return new Cursor(next, found.length() == next.length());
+        }
+
+        @Override
+        public boolean isWord() {
+            return word;
+        }
+
+        @Override
+        public String prefix() {
+            return prefix;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+import java.util.Collection;
+import java.util.TreeSet;
+
+/**
+ * A lexicon backed by java.util.TreeSet, the structure WordSearchEngine
+ * has always used.
+ */
+public class TreeSetLexicon extends SortedLexicon {
+    private final TreeSet<String> words = new TreeSet<>();
+
+    @Override
+    public void addAll(Collection<String> words) {
+        this.words.addAll(words);
+    }
+
+    @Override
+    public int size() {
+        return words.size();
+    }
+
+    @Override
+    protected String ceiling(String key) {
+        return words.ceiling(key);
+    }
+}
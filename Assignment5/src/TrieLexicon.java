@@ -0,0 +1,121 @@
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * A lexicon stored as a trie. Each node keeps its children in a pair of
+ * parallel arrays sorted by character, which stays small for the sparse
+ * lower levels of a dictionary. A cursor holds its trie node, so stepping
+ * by a tile walks only the tile's own characters.
+ */
+public class TrieLexicon implements Lexicon {
+    private final Node root = new Node();
+    private int size = 0;
+
+    /** A trie node: the children by character, and whether a word ends here. */
+    private static final class Node {
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        private boolean word;
+
+        /** Returns the child for c, or null if there is none. */
+        Node child(char c) {
+            int i = Arrays.binarySearch(keys, c);
+            return (i >= 0) ? children[i] : null;
+        }
+
+        /** Returns the child for c, creating it if there is none. */
+        Node addChild(char c) {
+            int i = Arrays.binarySearch(keys, c);
+            if (i >= 0) {
+                return children[i];
+            }
+            i = -i - 1;
+            int n = keys.length;
+            char[] newKeys = new char[n + 1];
+            Node[] newChildren = new Node[n + 1];
+            System.arraycopy(keys, 0, newKeys, 0, i);
+            System.arraycopy(children, 0, newChildren, 0, i);
+            System.arraycopy(keys, i, newKeys, i + 1, n - i);
+            System.arraycopy(children, i, newChildren, i + 1, n - i);
+            newKeys[i] = c;
+            newChildren[i] = new Node();
+            keys = newKeys;
+            children = newChildren;
+            return newChildren[i];
+        }
+    }
+
+    @Override
+    public void addAll(Collection<String> words) {
+        for (String word : words) {
+            Node n = root;
+            for (int i = 0; i < word.length(); i++) {
+                n = n.addChild(word.charAt(i));
+            }
+            if (!n.word) {
+                n.word = true;
+                size++;
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean contains(String word) {
+        Node n = walk(root, word);
+        return n != null && n.word;
+    }
+
+    @Override
+    public boolean hasPrefix(String prefix) {
+        return walk(root, prefix) != null;
+    }
+
+    @Override
+    public Lexicon.Cursor cursor() {
+        return new Cursor(root, "");
+    }
+
+    /**
+     * Returns the node reached by following the characters of s down from
+     * n, or null if the trie has no such path. Every node lies on the path
+     * to some word, so reaching one means s is a valid prefix.
+     */
+    private static Node walk(Node n, String s) {
+        for (int i = 0; i < s.length() && n != null; i++) {
+            n = n.child(s.charAt(i));
+        }
+        return n;
+    }
+
+    /** A trie node together with the prefix that leads to it. */
+    private static final class Cursor implements Lexicon.Cursor {
+        private final Node node;
+        private final String prefix;
+
+        Cursor(Node node, String prefix) {
+            this.node = node;
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Lexicon.Cursor step(String letters) {
+            Node next = walk(node, letters);
+            return (next == null) ? null : new Cursor(next, prefix + letters);
+        }
+
+        @Override
+        public boolean isWord() {
+            return node.word;
+        }
+
+        @Override
+        public String prefix() {
+            return prefix;
+        }
+    }
+}
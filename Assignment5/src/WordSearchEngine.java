@@ -11,7 +11,7 @@ import java.util.*;
 public class WordSearchEngine implements WordSearchGame {
     private String[][] board = {{"E", "E", "C", "A"}, {"A", "L", "E", "P"},
             {"H", "N", "B", "O"}, {"Q", "T", "T", "Y"}};
-    TreeSet<String> tree = new TreeSet<>();
+    private final Lexicon lexicon;
     private boolean lexLoaded = false;
     protected int square = 4;
     private String[] boardSingleArray = new String[]{"E", "E", "C", "A",
@@ -22,6 +22,24 @@ public class WordSearchEngine implements WordSearchGame {
     private String wordSoFar;
     private Position start;
 
+    /** Creates a game whose lexicon is backed by a TreeSet. */
+    public WordSearchEngine() {
+        this(new TreeSetLexicon());
+    }
+
+    /**
+     * Creates a game that stores its words in the given lexicon.
+     *
+     * @param lexicon The empty lexicon that loadLexicon will fill.
+     * @throws IllegalArgumentException if lexicon is null
+     */
+    public WordSearchEngine(Lexicon lexicon) {
+        if (lexicon == null) {
+            throw new IllegalArgumentException();
+        }
+        this.lexicon = lexicon;
+    }
+
     /**
      * Loads the lexicon into a data structure for later use.
      *
@@ -43,7 +61,7 @@ public class WordSearchEngine implements WordSearchGame {
         } catch (FileNotFoundException e) {
             throw new IllegalArgumentException();
         }
-        tree.addAll(fileArray);
+        lexicon.addAll(fileArray);
         lexLoaded = true;
     }
 
@@ -141,14 +159,42 @@ public class WordSearchEngine implements WordSearchGame {
             throw new IllegalStateException();
         }
         SortedSet<String> scoreWords = new TreeSet<>();
-        for (String s : tree) {
-            if (s.length() >= minimumWordLength && !(isOnBoard(s).isEmpty())) {
-                scoreWords.add(s);
+        boolean[][] used = new boolean[square][square];
+        Lexicon.Cursor empty = lexicon.cursor();
+        for (int i = 0; i < square; i++) {
+            for (int j = 0; j < square; j++) {
+                collectWords(i, j, empty, used, minimumWordLength, scoreWords);
             }
         }
         return scoreWords;
     }
 
+    /**
+     * Extends the prefix at cursor by the tile at (row, col) and adds every
+     * word of at least minimumWordLength characters that a path continuing
+     * from that tile spells. A path is abandoned as soon as its letters stop
+     * being a prefix of any word in the lexicon.
+     */
+    private void collectWords(int row, int col, Lexicon.Cursor cursor, boolean[][] used,
+                              int minimumWordLength, SortedSet<String> found) {
+        Lexicon.Cursor next = cursor.step(board[row][col]);
+        if (next == null) {
+            return;
+        }
+        if (next.isWord() && next.prefix().length() >= minimumWordLength) {
+            found.add(next.prefix());
+        }
+        used[row][col] = true;
+        for (int i = Math.max(row - 1, 0); i <= Math.min(row + 1, square - 1); i++) {
+            for (int j = Math.max(col - 1, 0); j <= Math.min(col + 1, square - 1); j++) {
+                if (!used[i][j]) {
+                    collectWords(i, j, next, used, minimumWordLength, found);
+                }
+            }
+        }
+        used[row][col] = false;
+    }
+
     /**
      * Computes the cumulative score for the scorable words in the given set.
      * To be scorable, a word must (1) have at least the minimum number of characters,
@@ -204,7 +250,7 @@ public class WordSearchEngine implements WordSearchGame {
             throw new IllegalStateException();
         }
         String word = wordToCheck.toUpperCase();
-        return tree.contains(word);
+        return lexicon.contains(word);
     }
 
     /**
@@ -224,18 +270,7 @@ public class WordSearchEngine implements WordSearchGame {
             throw new IllegalStateException();
         }
         String prefix = prefixToCheck.toUpperCase();
-        int length = prefix.length();
-        TreeSet<String> sample = new TreeSet<>();
-
-        for (String s : tree) {
-            if (length > s.length()) {
-                continue;
-            }
-            if (s.substring(0, length).compareTo(prefix) == 0) {
-                return true;
-            }
-        }
-        return false;
+        return lexicon.hasPrefix(prefix);
     }
 
     /**
@@ -14,6 +14,54 @@ public class WordSearchGameFactory {
         return new WordSearchEngine();
     }
 
+    /**
+     * Returns an instance of a class that implements the WordSearchGame
+     * interface and stores its words in a new lexicon of the given kind.
+     *
+     * @throws IllegalArgumentException if backend is null
+     */
+    public static WordSearchGame createGame(Backend backend) {
+        if (backend == null) {
+            throw new IllegalArgumentException();
+        }
+        return new WordSearchEngine(backend.newLexicon());
+    }
+
+    /**
+     * Returns an instance of a class that implements the WordSearchGame
+     * interface and stores its words in the given lexicon, for example a
+     * TreeSetLexicon, AvlTreeLexicon or TrieLexicon.
+     *
+     * @throws IllegalArgumentException if lexicon is null
+     */
+    public static WordSearchGame createGame(Lexicon lexicon) {
+        return new WordSearchEngine(lexicon);
+    }
+
+    /**
+     * The lexicon backends a game can store its words in.
+     */
+    public enum Backend {
+        /** A java.util.TreeSet, the original backend. */
+        TREE_SET,
+        /** The repo's AvlTree, searched by prefix ceiling. */
+        AVL_TREE,
+        /** A trie, stepped one letter at a time. */
+        TRIE;
+
+        /** Returns a new, empty lexicon of this kind. */
+        public Lexicon newLexicon() {
+            switch (this) {
+                case AVL_TREE:
+                    return new AvlTreeLexicon();
+                case TRIE:
+                    return new TrieLexicon();
+                default:
+                    return new TreeSetLexicon();
+            }
+        }
+    }
+
     public static void main(String[] args) {
         WordSearchGame game = createGame();
         String[] stringArray = new String[]{"O","Y","D","D","T","P","N","R","A","H","E","L","C","S","B","P","S","U","B","G","U","P","Y","H","R","R","X","R","E","F","H","D","H","T","K","X","K","O","Z","F"
@@ -1,10 +1,26 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.AbstractList;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Provides an implementation of a binary search tree
  * with no balance constraints, implemented with linked nodes.
+ * A tree can optionally be built as a treap or a splay tree, which keeps
+ * the same API but bounds its depth no matter the insertion order.
  *
  * @author Dean Hendrix (dh@auburn.edu)
  * @version 2018-04-30
@@ -21,19 +37,84 @@ public class BinarySearchTree<T extends Comparable<T>> implements Iterable<T> {
     // the number of nodes in this bst
     private int size;
 
+    // how this bst keeps itself balanced
+    private final Balance balance;
+
+    // the source of treap priorities, or null if this bst is not a treap
+    private final Random priorities;
+
+    // instrumentation counters, or null while statistics are disabled
+    private TreeStatistics stats;
+
+    // scratch node reused by every splay, created on first use
+    private Node splayHeader;
+
     /** Defines the node structure for this bst. */
     private class Node {
         T element;
         Node left;
         Node right;
+        int priority;
 
         /** Constructs a node containing the given element. */
         public Node(T elem) {
             element = elem;
+            if (stats != null) {
+                stats.nodeAllocated();
+            }
         }
     }
 
 
+    /**
+     * The ways a bst can keep itself balanced.
+     */
+    public enum Balance {
+        /** No balancing; sorted input degrades the tree to a list. */
+        NONE,
+        /**
+         * A randomized treap: each node gets a random priority and is kept
+         * above all nodes of lower priority, which gives O(log n) expected
+         * depth for any insertion order.
+         */
+        TREAP,
+        /**
+         * A splay tree: add, contains and get move the element they touch
+         * to the root. Operations take O(log n) amortized time, and
+         * frequently accessed elements stay near the root.
+         *
+         * <p>Since lookups restructure the tree, contains and get count as
+         * modifications here: calling them on the tree while a view,
+         * stream or spliterator is walking it can skip or repeat elements,
+         * and even threads that only read need external synchronization.
+         */
+        SPLAY
+    }
+
+
+    //////////////////////////////
+    // C O N S T R U C T O R S  //
+    //////////////////////////////
+
+    /**
+     * Constructs an empty bst with no balance constraints.
+     */
+    public BinarySearchTree() {
+        this(Balance.NONE);
+    }
+
+    /**
+     * Constructs an empty bst that keeps itself balanced as given.
+     */
+    public BinarySearchTree(Balance balance) {
+        if (balance == null) {
+            throw new IllegalArgumentException();
+        }
+        this.balance = balance;
+        this.priorities = (balance == Balance.TREAP) ? new Random() : null;
+    }
+
+
     ////////////////////
     // M E T R I C S  //
     ////////////////////
@@ -60,15 +141,35 @@ public class BinarySearchTree<T extends Comparable<T>> implements Iterable<T> {
     }
 
     /**
-     * Returns the height of node n in this bst.
+     * Returns the height of node n in this bst. Counts levels breadth-first
+     * so that a degenerate tree cannot overflow the stack.
      */
     private int height(Node n) {
-        if (n == null) {
-            return 0;
+        int height = 0;
+        Deque<Node> level = new ArrayDeque<>();
+        if (n != null) {
+            level.add(n);
         }
-        int leftHeight = height(n.left);
-        int rightHeight = height(n.right);
-        return 1 + Math.max(leftHeight, rightHeight);
+        while (!level.isEmpty()) {
+            height++;
+            for (int i = level.size(); i > 0; i--) {
+                Node m = level.remove();
+                if (m.left != null) {
+                    level.add(m.left);
+                }
+                if (m.right != null) {
+                    level.add(m.right);
+                }
+            }
+        }
+        return height;
+    }
+
+    /**
+     * Returns how this bst keeps itself balanced.
+     */
+    public Balance balance() {
+        return balance;
     }
 
 
@@ -80,10 +181,20 @@ public class BinarySearchTree<T extends Comparable<T>> implements Iterable<T> {
      * Ensures this bst contains the specified element. Uses an iterative implementation.
      */
     public void add(T element) {
+        if (balance == Balance.TREAP) {
+            addTreap(element);
+            return;
+        }
+        if (balance == Balance.SPLAY) {
+            addSplay(element);
+            return;
+        }
+
         // special case if empty
         if (root == null) {
             root = new Node(element);
             size++;
+            endOperation(TreeStatistics.Operation.ADD);
             return;
         }
 
@@ -93,9 +204,11 @@ public class BinarySearchTree<T extends Comparable<T>> implements Iterable<T> {
         int cmp = 0;
         while (n != null) {
             parent = n;
-            cmp = element.compareTo(parent.element);
+            visit();
+            cmp = compare(element, parent.element);
             if (cmp == 0) {
                 // don't add a duplicate
+                endOperation(TreeStatistics.Operation.ADD);
                 return;
             } else if (cmp < 0) {
                 n = n.left;
@@ -103,6 +216,7 @@ public class BinarySearchTree<T extends Comparable<T>> implements Iterable<T> {
                 n = n.right;
             }
         }
+        endOperation(TreeStatistics.Operation.ADD);
 
         // add element to the appropriate empty subtree of parent
         if (cmp < 0) {
@@ -114,10 +228,16 @@ public class BinarySearchTree<T extends Comparable<T>> implements Iterable<T> {
     }
 
     /**
-     * Ensures this bst contains the specified element. Calls a recursive method.
+     * Ensures this bst contains the specified element. Calls a recursive
+     * method, unless this bst balances itself, in which case this is add.
      */
     public void put(T element) {
+        if (balance != Balance.NONE) {
+            add(element);
+            return;
+        }
         root = put(element, root);
+        endOperation(TreeStatistics.Operation.ADD);
     }
 
     /**
@@ -128,7 +248,8 @@ public class BinarySearchTree<T extends Comparable<T>> implements Iterable<T> {
             size++;
             return new Node(element);
         }
-        int cmp = element.compareTo(n.element);
+        visit();
+        int cmp = compare(element, n.element);
         if (cmp < 0) {
             n.left = put(element, n.left);
         } else if (cmp > 0) {
@@ -137,35 +258,352 @@ public class BinarySearchTree<T extends Comparable<T>> implements Iterable<T> {
         return n;
     }
 
+    /**
+     * Adds all of the given elements to this bst. When the batch is already
+     * in ascending order and large relative to this tree, the tree is rebuilt
+     * balanced from a single O(n + m) merge instead of m separate adds, which
+     * would otherwise grow a sorted batch into a linked list.
+     */
+    public void addAll(Collection<? extends T> elements) {
+        int logSize = Integer.SIZE - Integer.numberOfLeadingZeros(size);
+        // a rebuilt tree would not respect treap priorities
+        if (balance != Balance.TREAP && isAscending(elements) && (long) elements.size() * (logSize + 1) >= size) {
+            List<T> merged = mergeDistinct(inorderList(root), elements);
+            root = build(merged, 0, merged.size() - 1);
+            size = merged.size();
+            return;
+        }
+        for (T element : elements) {
+            add(element);
+        }
+    }
+
+
+    /////////////////////////////////
+    // S E L F - B A L A N C I N G //
+    /////////////////////////////////
+
+    /**
+     * Ensures this treap contains the specified element. The new leaf is
+     * rotated up past every ancestor with a lower priority, following the
+     * directions recorded on the way down without comparing again.
+     */
+    private void addTreap(T element) {
+        Deque<Node> path = new ArrayDeque<>();
+        Deque<Boolean> wentLeft = new ArrayDeque<>();
+        Node n = root;
+        while (n != null) {
+            visit();
+            int cmp = compare(element, n.element);
+            if (cmp == 0) {
+                endOperation(TreeStatistics.Operation.ADD);
+                return;
+            }
+            path.push(n);
+            wentLeft.push(cmp < 0);
+            n = (cmp < 0) ? n.left : n.right;
+        }
+        endOperation(TreeStatistics.Operation.ADD);
+        Node child = new Node(element);
+        child.priority = priorities.nextInt();
+        size++;
+        boolean isRoot = true;
+        while (!path.isEmpty()) {
+            Node parent = path.pop();
+            boolean left = wentLeft.pop();
+            if (left) {
+                parent.left = child;
+            } else {
+                parent.right = child;
+            }
+            if (child.priority <= parent.priority) {
+                isRoot = false;
+                break;
+            }
+            child = left ? rotateRight(parent) : rotateLeft(parent);
+        }
+        if (isRoot) {
+            root = child;
+        }
+    }
+
+    /**
+     * Ensures this splay tree contains the specified element, leaving it at
+     * the root.
+     */
+    private void addSplay(T element) {
+        if (root == null) {
+            root = new Node(element);
+            size++;
+            endOperation(TreeStatistics.Operation.ADD);
+            return;
+        }
+        root = splay(root, element);
+        int cmp = compare(element, root.element);
+        endOperation(TreeStatistics.Operation.ADD);
+        if (cmp == 0) {
+            return;
+        }
+        Node n = new Node(element);
+        if (cmp < 0) {
+            n.left = root.left;
+            n.right = root;
+            root.left = null;
+        } else {
+            n.right = root.right;
+            n.left = root;
+            root.right = null;
+        }
+        root = n;
+        size++;
+    }
+
+    /**
+     * Splays the subtree rooted at n around element and returns its new
+     * root, which holds element if it is present and otherwise the last
+     * node visited on the way to where element would be. Works top-down in
+     * a single pass, splitting the subtree into nodes known to be smaller
+     * and larger than element and reassembling them at the end.
+     */
+    private Node splay(Node n, T element) {
+        // header.right collects the smaller nodes, header.left the larger ones
+        if (splayHeader == null) {
+            splayHeader = new Node(null);
+        }
+        Node header = splayHeader;
+        Node smaller = header;
+        Node larger = header;
+        while (true) {
+            visit();
+            int cmp = compare(element, n.element);
+            if (cmp < 0) {
+                if (n.left == null) {
+                    break;
+                }
+                if (compare(element, n.left.element) < 0) {
+                    // the child looked at is passed over, not visited again
+                    visit();
+                    n = rotateRight(n);
+                    if (n.left == null) {
+                        break;
+                    }
+                }
+                larger.left = n;
+                larger = n;
+                n = n.left;
+            } else if (cmp > 0) {
+                if (n.right == null) {
+                    break;
+                }
+                if (compare(element, n.right.element) > 0) {
+                    visit();
+                    n = rotateLeft(n);
+                    if (n.right == null) {
+                        break;
+                    }
+                }
+                smaller.right = n;
+                smaller = n;
+                n = n.right;
+            } else {
+                break;
+            }
+        }
+        smaller.right = n.left;
+        larger.left = n.right;
+        n.left = header.right;
+        n.right = header.left;
+        header.left = null;
+        header.right = null;
+        return n;
+    }
+
+    /** Rotate left over n, returning the new subtree root. */
+    private Node rotateLeft(Node n) {
+        if (stats != null) {
+            stats.singleRotation();
+        }
+        Node m = n.right;
+        n.right = m.left;
+        m.left = n;
+        return m;
+    }
+
+    /** Rotate right over n, returning the new subtree root. */
+    private Node rotateRight(Node n) {
+        if (stats != null) {
+            stats.singleRotation();
+        }
+        Node m = n.left;
+        n.left = m.right;
+        m.right = n;
+        return m;
+    }
+
+
+    /////////////////////////////////////////////
+    // B U I L D I N G   F R O M   S O R T E D //
+    /////////////////////////////////////////////
+
+    /**
+     * Returns a perfectly balanced bst holding the given elements in
+     * O(n) time. Adjacent duplicates are dropped.
+     *
+     * @throws IllegalArgumentException if sorted is not in ascending order
+     */
+    public static <T extends Comparable<T>> BinarySearchTree<T> fromSorted(T[] sorted) {
+        return fromSorted(Arrays.asList(sorted).iterator());
+    }
+
+    /**
+     * Returns a perfectly balanced bst holding the given elements in
+     * O(n) time. Adjacent duplicates are dropped.
+     *
+     * @throws IllegalArgumentException if sorted is not in ascending order
+     */
+    public static <T extends Comparable<T>> BinarySearchTree<T> fromSorted(Collection<? extends T> sorted) {
+        return fromSorted(sorted.iterator());
+    }
+
+    /**
+     * Returns a perfectly balanced bst holding the elements produced by
+     * sorted in O(n) time. Adjacent duplicates are dropped.
+     *
+     * @throws IllegalArgumentException if sorted is not in ascending order
+     */
+    public static <T extends Comparable<T>> BinarySearchTree<T> fromSorted(Iterator<? extends T> sorted) {
+        List<T> elements = new ArrayList<>();
+        while (sorted.hasNext()) {
+            T element = sorted.next();
+            if (!elements.isEmpty()) {
+                int cmp = elements.get(elements.size() - 1).compareTo(element);
+                if (cmp > 0) {
+                    throw new IllegalArgumentException();
+                }
+                if (cmp == 0) {
+                    continue;
+                }
+            }
+            elements.add(element);
+        }
+        BinarySearchTree<T> tree = new BinarySearchTree<>();
+        tree.root = tree.build(elements, 0, elements.size() - 1);
+        tree.size = elements.size();
+        return tree;
+    }
+
+    /**
+     * Builds a balanced subtree from elements[lo..hi], which must be
+     * distinct and ascending.
+     */
+    private Node build(List<T> elements, int lo, int hi) {
+        if (lo > hi) {
+            return null;
+        }
+        int mid = (lo + hi) >>> 1;
+        Node n = new Node(elements.get(mid));
+        n.left = build(elements, lo, mid - 1);
+        n.right = build(elements, mid + 1, hi);
+        return n;
+    }
+
+    /** Returns true if the elements are in ascending order. */
+    private static <T extends Comparable<T>> boolean isAscending(Iterable<? extends T> elements) {
+        T previous = null;
+        for (T element : elements) {
+            if (previous != null && previous.compareTo(element) > 0) {
+                return false;
+            }
+            previous = element;
+        }
+        return true;
+    }
+
+    /** Merges two ascending sequences into one ascending list without duplicates. */
+    private static <T extends Comparable<T>> List<T> mergeDistinct(List<T> a,
+            Collection<? extends T> b) {
+        List<T> merged = new ArrayList<>(a.size() + b.size());
+        Iterator<T> left = a.iterator();
+        Iterator<? extends T> right = b.iterator();
+        T x = left.hasNext() ? left.next() : null;
+        T y = right.hasNext() ? right.next() : null;
+        while (x != null || y != null) {
+            T next;
+            if (y == null || (x != null && x.compareTo(y) <= 0)) {
+                next = x;
+                x = left.hasNext() ? left.next() : null;
+            } else {
+                next = y;
+                y = right.hasNext() ? right.next() : null;
+            }
+            if (merged.isEmpty() || merged.get(merged.size() - 1).compareTo(next) != 0) {
+                merged.add(next);
+            }
+        }
+        return merged;
+    }
+
 
     ////////////////////////
     // S E A R C H I N G  //
     ////////////////////////
 
     /**
-     * Returns true if this bst contains element, false otherwise. Uses an iterative strategy.
+     * Returns true if this bst contains element, false otherwise. Uses an
+     * iterative strategy. A splay tree moves what it finds to the root.
      */
     public boolean contains(T element) {
+        if (balance == Balance.SPLAY) {
+            return splayTo(element) != null;
+        }
+        Node n = findNode(element);
+        endOperation(TreeStatistics.Operation.SEARCH);
+        return n != null;
+    }
+
+    /** Returns the node holding element, or null if there is none. Never splays. */
+    private Node findNode(T element) {
         Node n = root;
         while (n != null) {
-            int cmp = element.compareTo(n.element);
+            visit();
+            int cmp = compare(element, n.element);
             if (cmp < 0) {
                 n = n.left;
             } else if (cmp > 0) {
                 n = n.right;
             } else {
-                return true;
+                break;
             }
         }
-        return false;
+        return n;
     }
 
     /**
      * Returns a reference to element if it is in this bst, null otherwise. Calls
-     * a recursive method.
+     * a recursive method. A splay tree moves what it finds to the root instead.
      */
     public T get(T element) {
-        return get(element, root);
+        if (balance == Balance.SPLAY) {
+            return splayTo(element);
+        }
+        T found = get(element, root);
+        endOperation(TreeStatistics.Operation.SEARCH);
+        return found;
+    }
+
+    /**
+     * Splays this bst around element, returning the element now at the
+     * root if it equals element and null otherwise.
+     */
+    private T splayTo(T element) {
+        if (root == null) {
+            endOperation(TreeStatistics.Operation.SEARCH);
+            return null;
+        }
+        root = splay(root, element);
+        boolean found = compare(element, root.element) == 0;
+        endOperation(TreeStatistics.Operation.SEARCH);
+        return found ? root.element : null;
     }
 
     /**
@@ -176,7 +614,8 @@ public class BinarySearchTree<T extends Comparable<T>> implements Iterable<T> {
         if (n == null) {
             return null;
         }
-        int cmp = element.compareTo(n.element);
+        visit();
+        int cmp = compare(element, n.element);
         if (cmp < 0) {
             return get(element, n.left);
         } else if (cmp > 0) {
@@ -186,6 +625,455 @@ public class BinarySearchTree<T extends Comparable<T>> implements Iterable<T> {
         }
     }
 
+    /**
+     * Returns the smallest element in this bst.
+     *
+     * @throws NoSuchElementException if this bst is empty
+     */
+    public T first() {
+        Node n = firstNode();
+        if (n == null) {
+            throw new NoSuchElementException();
+        }
+        return n.element;
+    }
+
+    /**
+     * Returns the largest element in this bst.
+     *
+     * @throws NoSuchElementException if this bst is empty
+     */
+    public T last() {
+        Node n = lastNode();
+        if (n == null) {
+            throw new NoSuchElementException();
+        }
+        return n.element;
+    }
+
+    /** Returns the largest element <= element, or null if there is none. */
+    public T floor(T element) {
+        return elementOf(floorNode(element, true));
+    }
+
+    /** Returns the largest element < element, or null if there is none. */
+    public T lower(T element) {
+        return elementOf(floorNode(element, false));
+    }
+
+    /** Returns the smallest element >= element, or null if there is none. */
+    public T ceiling(T element) {
+        return elementOf(ceilingNode(element, true));
+    }
+
+    /** Returns the smallest element > element, or null if there is none. */
+    public T higher(T element) {
+        return elementOf(ceilingNode(element, false));
+    }
+
+    /** Returns the element held in n, or null if n is null. */
+    private T elementOf(Node n) {
+        return (n == null) ? null : n.element;
+    }
+
+    /**
+     * Returns the node holding the largest element that is below element
+     * (or equal to it, if inclusive), or null if there is none.
+     */
+    private Node floorNode(T element, boolean inclusive) {
+        Node n = root;
+        Node best = null;
+        while (n != null) {
+            visit();
+            int cmp = compare(element, n.element);
+            if (cmp > 0 || (cmp == 0 && inclusive)) {
+                best = n;
+                if (cmp == 0) {
+                    break;
+                }
+                n = n.right;
+            } else {
+                n = n.left;
+            }
+        }
+        endOperation(TreeStatistics.Operation.SEARCH);
+        return best;
+    }
+
+    /**
+     * Returns the node holding the smallest element that is above element
+     * (or equal to it, if inclusive), or null if there is none.
+     */
+    private Node ceilingNode(T element, boolean inclusive) {
+        Node n = root;
+        Node best = null;
+        while (n != null) {
+            visit();
+            int cmp = compare(element, n.element);
+            if (cmp < 0 || (cmp == 0 && inclusive)) {
+                best = n;
+                if (cmp == 0) {
+                    break;
+                }
+                n = n.left;
+            } else {
+                n = n.right;
+            }
+        }
+        endOperation(TreeStatistics.Operation.SEARCH);
+        return best;
+    }
+
+
+    /////////////////////////
+    // S T A T I S T I C S //
+    /////////////////////////
+
+    /**
+     * Turns the counting of statistics on or off. Turning it on starts
+     * every count from zero. While off, the only cost is a null check.
+     *
+     * @see TreeStatistics
+     */
+    public void setStatisticsEnabled(boolean enabled) {
+        stats = enabled ? new TreeStatistics() : null;
+    }
+
+    /**
+     * Returns true if this bst is counting statistics.
+     */
+    public boolean isStatisticsEnabled() {
+        return stats != null;
+    }
+
+    /**
+     * Returns a snapshot of the statistics counted since they were enabled,
+     * or null if statistics are disabled.
+     */
+    public TreeStatistics statistics() {
+        return (stats == null) ? null : stats.snapshot();
+    }
+
+    /** Compares a with b, counting the comparison if statistics are enabled. */
+    private int compare(T a, T b) {
+        if (stats != null) {
+            stats.comparison();
+        }
+        return a.compareTo(b);
+    }
+
+    /** Counts a node visited by a search if statistics are enabled. */
+    private void visit() {
+        if (stats != null) {
+            stats.visit();
+        }
+    }
+
+    /** Ends an operation of the given kind if statistics are enabled. */
+    private void endOperation(TreeStatistics.Operation op) {
+        if (stats != null) {
+            stats.operation(op);
+        }
+    }
+
+
+    ///////////////////////////
+    // R A N G E   V I E W S //
+    ///////////////////////////
+
+    /**
+     * Returns a view of the elements in this bst ranging from fromElement
+     * to toElement. The view is backed by this tree and copies nothing.
+     */
+    public SubSet subSet(T fromElement, boolean fromInclusive,
+            T toElement, boolean toInclusive) {
+        if (fromElement == null || toElement == null) {
+            throw new IllegalArgumentException();
+        }
+        if (fromElement.compareTo(toElement) > 0) {
+            throw new IllegalArgumentException();
+        }
+        return new SubSet(fromElement, fromInclusive, toElement, toInclusive);
+    }
+
+    /**
+     * Returns a view of the elements ranging from fromElement, inclusive, to
+     * toElement, exclusive.
+     */
+    public SubSet subSet(T fromElement, T toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    /** Returns a view of the elements less than (or equal to, if inclusive) toElement. */
+    public SubSet headSet(T toElement, boolean inclusive) {
+        if (toElement == null) {
+            throw new IllegalArgumentException();
+        }
+        return new SubSet(null, false, toElement, inclusive);
+    }
+
+    /** Returns a view of the elements strictly less than toElement. */
+    public SubSet headSet(T toElement) {
+        return headSet(toElement, false);
+    }
+
+    /** Returns a view of the elements greater than (or equal to, if inclusive) fromElement. */
+    public SubSet tailSet(T fromElement, boolean inclusive) {
+        if (fromElement == null) {
+            throw new IllegalArgumentException();
+        }
+        return new SubSet(fromElement, inclusive, null, false);
+    }
+
+    /** Returns a view of the elements greater than or equal to fromElement. */
+    public SubSet tailSet(T fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    /**
+     * A live view of the elements of this bst that lie between two
+     * bounds. A null bound means the view is unbounded on that side. The
+     * view's own queries never restructure the tree, but its iterators walk
+     * the tree in place, so in a SPLAY tree they must not overlap with
+     * contains or get on the tree itself.
+     */
+    public class SubSet implements Iterable<T> {
+        private final T lo;
+        private final boolean loInclusive;
+        private final T hi;
+        private final boolean hiInclusive;
+
+        /** Constructs a view over the given bounds. */
+        private SubSet(T lo, boolean loInclusive, T hi, boolean hiInclusive) {
+            this.lo = lo;
+            this.loInclusive = loInclusive;
+            this.hi = hi;
+            this.hiInclusive = hiInclusive;
+        }
+
+        /** Returns true if element lies within the bounds of this view. */
+        private boolean inRange(T element) {
+            return !tooLow(element, lo, loInclusive) && !tooHigh(element, hi, hiInclusive);
+        }
+
+        /**
+         * Returns true if this view contains element. Unlike the tree's own
+         * contains, this never splays.
+         */
+        public boolean contains(T element) {
+            if (!inRange(element)) {
+                return false;
+            }
+            Node n = findNode(element);
+            endOperation(TreeStatistics.Operation.SEARCH);
+            return n != null;
+        }
+
+        /** Returns true if there are no elements in this view. */
+        public boolean isEmpty() {
+            return lowestNode(lo, loInclusive, hi, hiInclusive) == null;
+        }
+
+        /**
+         * Returns the number of elements in this view. Runs in time
+         * proportional to the number of elements counted.
+         */
+        public int size() {
+            int count = 0;
+            for (Iterator<T> it = iterator(); it.hasNext(); it.next()) {
+                count++;
+            }
+            return count;
+        }
+
+        /**
+         * Returns the smallest element in this view.
+         *
+         * @throws NoSuchElementException if this view is empty
+         */
+        public T first() {
+            Node n = lowestNode(lo, loInclusive, hi, hiInclusive);
+            if (n == null) {
+                throw new NoSuchElementException();
+            }
+            return n.element;
+        }
+
+        /**
+         * Returns the largest element in this view.
+         *
+         * @throws NoSuchElementException if this view is empty
+         */
+        public T last() {
+            Node n = (hi == null) ? lastNode() : floorNode(hi, hiInclusive);
+            if (n == null || tooLow(n.element, lo, loInclusive)) {
+                throw new NoSuchElementException();
+            }
+            return n.element;
+        }
+
+        /** Returns an iterator over this view in ascending natural order. */
+        @Override
+        public Iterator<T> iterator() {
+            return new RangeIterator(lo, loInclusive, hi, hiInclusive);
+        }
+
+        /** Returns a string representation of the elements in this view. */
+        @Override
+        public String toString() {
+            List<T> list = new ArrayList<>();
+            for (T element : this) {
+                list.add(element);
+            }
+            return list.toString();
+        }
+    }
+
+    /** Returns true if element falls below the lower bound lo. */
+    private boolean tooLow(T element, T lo, boolean loInclusive) {
+        if (lo == null) {
+            return false;
+        }
+        int cmp = element.compareTo(lo);
+        return cmp < 0 || (cmp == 0 && !loInclusive);
+    }
+
+    /** Returns true if element falls above the upper bound hi. */
+    private boolean tooHigh(T element, T hi, boolean hiInclusive) {
+        if (hi == null) {
+            return false;
+        }
+        int cmp = element.compareTo(hi);
+        return cmp > 0 || (cmp == 0 && !hiInclusive);
+    }
+
+    /** Returns the node holding the smallest element within the bounds, or null. */
+    private Node lowestNode(T lo, boolean loInclusive, T hi, boolean hiInclusive) {
+        Node n = (lo == null) ? firstNode() : ceilingNode(lo, loInclusive);
+        if (n == null || tooHigh(n.element, hi, hiInclusive)) {
+            return null;
+        }
+        return n;
+    }
+
+    /** Returns the leftmost node of this bst, or null if empty. */
+    private Node firstNode() {
+        Node n = root;
+        while (n != null && n.left != null) {
+            n = n.left;
+        }
+        return n;
+    }
+
+    /** Returns the rightmost node of this bst, or null if empty. */
+    private Node lastNode() {
+        Node n = root;
+        while (n != null && n.right != null) {
+            n = n.right;
+        }
+        return n;
+    }
+
+    /**
+     * Walks the elements between two bounds in ascending order, keeping only
+     * the O(log n) path of pending ancestors on a stack.
+     */
+    private class RangeIterator implements Iterator<T> {
+        private final Deque<Node> stack = new ArrayDeque<>();
+        private final T hi;
+        private final boolean hiInclusive;
+
+        /** Positions this iterator at the first element within the bounds. */
+        RangeIterator(T lo, boolean loInclusive, T hi, boolean hiInclusive) {
+            this.hi = hi;
+            this.hiInclusive = hiInclusive;
+            Node n = root;
+            while (n != null) {
+                if (tooLow(n.element, lo, loInclusive)) {
+                    n = n.right;
+                } else {
+                    stack.push(n);
+                    n = n.left;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !stack.isEmpty() && !tooHigh(stack.peek().element, hi, hiInclusive);
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Node n = stack.pop();
+            for (Node m = n.right; m != null; m = m.left) {
+                stack.push(m);
+            }
+            return n.element;
+        }
+    }
+
+
+    /////////////////////
+    // F R E E Z I N G //
+    /////////////////////
+
+    /**
+     * Returns an immutable copy of this bst laid out in a single
+     * cache-friendly array, for read-mostly lookups. The copy is balanced no
+     * matter what shape this tree has, and later changes to this tree are
+     * not reflected in it. EytzingerSet is the one in AVLTrees/src, shared
+     * with AvlTree.freeze.
+     */
+    public EytzingerSet<T> freeze() {
+        return new EytzingerSet<>(new RangeIterator(null, false, null, false), size);
+    }
+
+
+    ///////////////////////
+    // S N A P S H O T S //
+    ///////////////////////
+
+    /**
+     * Writes the elements of this bst to file in ascending order, in the
+     * format documented in TreeSnapshot. The shape of this bst is not
+     * recorded, since readSnapshot always rebuilds a balanced tree.
+     *
+     * @throws IOException if file cannot be written
+     */
+    public void writeSnapshot(Path file, KeyCodec<T> codec) throws IOException {
+        TreeSnapshot.write(file, codec, () -> new RangeIterator(null, false, null, false),
+                size, null);
+    }
+
+    /**
+     * Returns a balanced bst rebuilt from the snapshot in file in O(n) time.
+     * Any shape recorded in the snapshot is ignored.
+     *
+     * @throws IOException if file cannot be read or is not a snapshot
+     */
+    public static <T extends Comparable<T>> BinarySearchTree<T> readSnapshot(Path file,
+            KeyCodec<T> codec) throws IOException {
+        TreeSnapshot<T> snapshot = TreeSnapshot.open(file, codec);
+        List<T> elements = new AbstractList<T>() {
+            @Override
+            public T get(int index) {
+                return snapshot.key(index);
+            }
+
+            @Override
+            public int size() {
+                return snapshot.size();
+            }
+        };
+        BinarySearchTree<T> tree = new BinarySearchTree<>();
+        tree.root = tree.build(elements, 0, elements.size() - 1);
+        tree.size = elements.size();
+        return tree;
+    }
 
 
     //////////////////////
@@ -205,20 +1093,11 @@ public class BinarySearchTree<T extends Comparable<T>> implements Iterable<T> {
      * Returns a List containing the elements of this bst in ascending natural order.
      */
     private List<T> inorderList(Node n) {
-        List<T> list = new ArrayList<>();
-        buildInorderList(root, list);
-        return list;
-    }
-
-    /**
-     * Builds list from the elements of this bst in ascending natural order.
-     */
-    private void buildInorderList(Node n, List<T> list) {
-        if (n != null) {
-            buildInorderList(n.left, list);
-            list.add(n.element);
-            buildInorderList(n.right, list);
+        List<T> list = new ArrayList<>(size);
+        for (Iterator<T> it = new RangeIterator(null, false, null, false); it.hasNext(); ) {
+            list.add(it.next());
         }
+        return list;
     }
 
 
@@ -235,4 +1114,126 @@ public class BinarySearchTree<T extends Comparable<T>> implements Iterable<T> {
         return inorderList(root).iterator();      
     }
 
+
+    ///////////////////
+    // S T R E A M S //
+    ///////////////////
+
+    /**
+     * Returns a spliterator over the elements in this bst in ascending
+     * order. It walks the tree in place and splits at subtree boundaries,
+     * so parallel streams divide the work along the tree's own shape
+     * (near-equal halves for a treap or a balanced bst) without copying the
+     * elements first. In a SPLAY tree, no contains or get may run on this
+     * bst while the spliterator, or a stream over it, is in use.
+     */
+    @Override
+    public Spliterator<T> spliterator() {
+        return new TreeSpliterator(null, false, null, false, size, true);
+    }
+
+    /** Returns a sequential stream over the elements in this bst in ascending order. */
+    public Stream<T> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /** Returns a parallel stream over the elements in this bst. */
+    public Stream<T> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    /**
+     * Covers the elements between two bounds. A split hands off everything
+     * below the topmost node strictly inside the bounds, which is that
+     * node's left subtree plus the ancestors and right subtrees between it
+     * and the lower bound. Traversal reuses RangeIterator, after which the
+     * spliterator no longer splits.
+     */
+    private class TreeSpliterator implements Spliterator<T> {
+        private T lo;
+        private boolean loInclusive;
+        private final T hi;
+        private final boolean hiInclusive;
+        private long estimate;
+        private boolean sized;
+        private Iterator<T> iterator;
+
+        /** Constructs a spliterator over the given bounds. */
+        TreeSpliterator(T lo, boolean loInclusive, T hi, boolean hiInclusive,
+                long estimate, boolean sized) {
+            this.lo = lo;
+            this.loInclusive = loInclusive;
+            this.hi = hi;
+            this.hiInclusive = hiInclusive;
+            this.estimate = estimate;
+            this.sized = sized;
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            if (iterator != null) {
+                return null;
+            }
+            Node n = root;
+            while (n != null) {
+                if (tooLow(n.element, lo, false)) {
+                    n = n.right;
+                } else if (tooHigh(n.element, hi, false)) {
+                    n = n.left;
+                } else {
+                    break;
+                }
+            }
+            if (n == null) {
+                return null;
+            }
+            TreeSpliterator prefix = new TreeSpliterator(lo, loInclusive, n.element, false,
+                    estimate >>> 1, false);
+            lo = n.element;
+            loInclusive = true;
+            estimate -= prefix.estimate;
+            sized = false;
+            return prefix;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (iterator == null) {
+                iterator = new RangeIterator(lo, loInclusive, hi, hiInclusive);
+            }
+            if (!iterator.hasNext()) {
+                return false;
+            }
+            action.accept(iterator.next());
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            if (iterator == null) {
+                iterator = new RangeIterator(lo, loInclusive, hi, hiInclusive);
+            }
+            while (iterator.hasNext()) {
+                action.accept(iterator.next());
+            }
+        }
+
+        @Override
+        public long estimateSize() {
+            return estimate;
+        }
+
+        @Override
+        public int characteristics() {
+            int characteristics = ORDERED | SORTED | DISTINCT | NONNULL;
+            return sized ? characteristics | SIZED : characteristics;
+        }
+
+        /** Returns null, since elements are in their natural order. */
+        @Override
+        public Comparator<? super T> getComparator() {
+            return null;
+        }
+    }
+
 }
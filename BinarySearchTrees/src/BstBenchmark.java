@@ -0,0 +1,115 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * BstBenchmark.java. Provides a rough timing client that compares the
+ * balance modes of BinarySearchTree on sorted, reversed, random and
+ * Zipf-skewed workloads.
+ */
+public class BstBenchmark {
+
+    // number of keys loaded into each tree
+    private static final int SIZE = 1 << 15;
+
+    // number of lookups timed in the skewed workload
+    private static final int LOOKUPS = 1 << 21;
+
+    // the exponent of the Zipf distribution used for skewed lookups
+    private static final double ZIPF_EXPONENT = 1.0;
+
+    // number of timed trials per workload; the first is treated as warmup
+    private static final int TRIALS = 3;
+
+    /** Drives execution. */
+    public static void main(String[] args) {
+        Integer[] sorted = new Integer[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            sorted[i] = i;
+        }
+        Integer[] reversed = new Integer[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            reversed[i] = SIZE - 1 - i;
+        }
+        Integer[] shuffled = shuffle(sorted.clone(), new Random(7));
+        // rank popularity independently of insertion order
+        Integer[] skewed = zipfLookups(shuffle(sorted.clone(), new Random(11)), new Random(13));
+
+        for (int trial = 0; trial < TRIALS; trial++) {
+            String label = (trial == 0) ? "warmup" : "trial " + trial;
+            System.out.println(label);
+            for (BinarySearchTree.Balance balance : BinarySearchTree.Balance.values()) {
+                load("sorted", balance, sorted);
+                load("reversed", balance, reversed);
+                load("random", balance, shuffled);
+                lookup("sorted", balance, sorted, shuffled);
+                lookup("zipf", balance, shuffled, skewed);
+            }
+        }
+    }
+
+    /** Times adding keys in the given order to an empty tree. */
+    private static void load(String order, BinarySearchTree.Balance balance, Integer[] keys) {
+        long start = System.nanoTime();
+        BinarySearchTree<Integer> bst = new BinarySearchTree<>(balance);
+        for (Integer key : keys) {
+            bst.add(key);
+        }
+        report("  add " + order + " " + balance, start, "height " + bst.height());
+    }
+
+    /** Times looking up each of lookups in a tree loaded with keys in order. */
+    private static void lookup(String order, BinarySearchTree.Balance balance,
+            Integer[] keys, Integer[] lookups) {
+        BinarySearchTree<Integer> bst = new BinarySearchTree<>(balance);
+        for (Integer key : keys) {
+            bst.add(key);
+        }
+        long start = System.nanoTime();
+        int found = 0;
+        for (Integer key : lookups) {
+            if (bst.contains(key)) {
+                found++;
+            }
+        }
+        report("  get " + order + " " + balance, start, "found " + found);
+    }
+
+    /** Shuffles keys in place and returns them. */
+    private static Integer[] shuffle(Integer[] keys, Random random) {
+        for (int i = keys.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            Integer swap = keys[i];
+            keys[i] = keys[j];
+            keys[j] = swap;
+        }
+        return keys;
+    }
+
+    /**
+     * Returns LOOKUPS keys drawn from keys with Zipf-distributed ranks, so
+     * that keys[0] is the most popular, keys[1] the next, and so on.
+     */
+    private static Integer[] zipfLookups(Integer[] keys, Random random) {
+        double[] cumulative = new double[keys.length];
+        double total = 0;
+        for (int i = 0; i < keys.length; i++) {
+            total += 1.0 / Math.pow(i + 1, ZIPF_EXPONENT);
+            cumulative[i] = total;
+        }
+        Integer[] lookups = new Integer[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            int rank = Arrays.binarySearch(cumulative, random.nextDouble() * total);
+            if (rank < 0) {
+                rank = -rank - 1;
+            }
+            lookups[i] = keys[Math.min(rank, keys.length - 1)];
+        }
+        return lookups;
+    }
+
+    /** Prints the elapsed time since start along with a note on the result. */
+    private static void report(String label, long start, String result) {
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        System.out.printf("%-28s %6d ms   (%s)%n", label, millis, result);
+    }
+}
@@ -0,0 +1,100 @@
+import java.util.function.Supplier;
+
+import trees.bench.SortedIntSet;
+
+/**
+ * Adapts the repo's trees to the benchmark interface. This class lives in
+ * the default package beside the trees it wraps, since classes in a named
+ * package (which JMH requires of benchmarks) cannot refer to them. Sums
+ * are taken through stream(), as for the JDK sets, since a tree's stream
+ * walks it in place while its iterator() copies it into a list first.
+ */
+public final class TreeAdapters {
+
+    private TreeAdapters() {
+    }
+
+    /**
+     * Returns a factory for empty sets backed by the named tree:
+     * "BinarySearchTree", "BinarySearchTree.TREAP", "BinarySearchTree.SPLAY"
+     * or "AvlTree". The name is resolved here, once, not on every set made.
+     */
+    public static Supplier<SortedIntSet> factory(String name) {
+        switch (name) {
+            case "BinarySearchTree":
+                return () -> bst(BinarySearchTree.Balance.NONE);
+            case "BinarySearchTree.TREAP":
+                return () -> bst(BinarySearchTree.Balance.TREAP);
+            case "BinarySearchTree.SPLAY":
+                return () -> bst(BinarySearchTree.Balance.SPLAY);
+            case "AvlTree":
+                return TreeAdapters::avl;
+            default:
+                throw new IllegalArgumentException(name);
+        }
+    }
+
+    /** Returns a set backed by a BinarySearchTree, which cannot remove. */
+    private static SortedIntSet bst(BinarySearchTree.Balance balance) {
+        BinarySearchTree<Integer> tree = new BinarySearchTree<>(balance);
+        return new SortedIntSet() {
+            @Override
+            public boolean add(int key) {
+                int before = tree.size();
+                tree.add(key);
+                return tree.size() != before;
+            }
+
+            @Override
+            public boolean contains(int key) {
+                return tree.contains(key);
+            }
+
+            @Override
+            public boolean remove(int key) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public long sum() {
+                return tree.stream().mapToLong(Integer::longValue).sum();
+            }
+
+            @Override
+            public int size() {
+                return tree.size();
+            }
+        };
+    }
+
+    /** Returns a set backed by an AvlTree. */
+    private static SortedIntSet avl() {
+        AvlTree<Integer> tree = new AvlTree<>();
+        return new SortedIntSet() {
+            @Override
+            public boolean add(int key) {
+                return tree.add(key);
+            }
+
+            @Override
+            public boolean contains(int key) {
+                return tree.contains(key);
+            }
+
+            @Override
+            public boolean remove(int key) {
+                return tree.remove(key);
+            }
+
+            @Override
+            public long sum() {
+                return tree.stream().mapToLong(Integer::longValue).sum();
+            }
+
+            @Override
+            public int size() {
+                return tree.size();
+            }
+        };
+    }
+}
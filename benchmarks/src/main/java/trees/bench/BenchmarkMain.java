@@ -0,0 +1,55 @@
+package trees.bench;
+
+import java.io.IOException;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler on, which reports allocation
+ * per operation, and writes the results as JSON to jmh-results.json. Any
+ * standard JMH command-line option may be given and takes precedence, for
+ * example a benchmark filter, -p size=1000, or -rff other.json. -h, -l
+ * and -lp print help or the benchmark list instead of running anything.
+ */
+public final class BenchmarkMain {
+
+    private BenchmarkMain() {
+    }
+
+    /** Drives execution. */
+    public static void main(String[] args)
+            throws RunnerException, CommandLineOptionException, IOException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        if (commandLine.shouldHelp()) {
+            commandLine.showHelp();
+            return;
+        }
+        if (commandLine.shouldList() || commandLine.shouldListWithParams()) {
+            Runner runner = new Runner(commandLine);
+            if (commandLine.shouldListWithParams()) {
+                runner.listWithParams(commandLine);
+            } else {
+                runner.list();
+            }
+            return;
+        }
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .parent(commandLine)
+                .addProfiler(GCProfiler.class)
+                .shouldFailOnError(false);
+        if (!commandLine.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        if (!commandLine.getResult().hasValue()) {
+            options.result("jmh-results.json");
+        }
+        new Runner(options.build()).run();
+    }
+}
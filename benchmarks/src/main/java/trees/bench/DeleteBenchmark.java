@@ -0,0 +1,75 @@
+package trees.bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures removing every key, in distribution order, from a full set.
+ * Only the structures that support remove take part; BinarySearchTree has
+ * none. The set is rebuilt before each invocation, outside the timing, and
+ * each invocation removes size keys.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class DeleteBenchmark {
+
+    @Param({"AVL_TREE", "TREE_SET", "CONCURRENT_SKIP_LIST_SET"})
+    public Structure structure;
+
+    @Param({"RANDOM", "SORTED", "REVERSED", "ZIPF"})
+    public KeyDistribution distribution;
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int size;
+
+    // the keys inserted, and then removed, in distribution order
+    private int[] keys;
+
+    // makes the set to remove from, resolved once per trial
+    private Supplier<SortedIntSet> factory;
+
+    // the set to remove from, refilled before every invocation
+    private SortedIntSet set;
+
+    /** Draws the keys and resolves the set factory. */
+    @Setup(Level.Trial)
+    public void drawKeys() {
+        keys = distribution.keys(size, 42);
+        factory = structure.factory();
+    }
+
+    /** Refills the set. */
+    @Setup(Level.Iteration)
+    public void fill() {
+        set = factory.get();
+        for (int key : keys) {
+            set.add(key);
+        }
+    }
+
+    /** Removes every key. */
+    @Benchmark
+    public SortedIntSet delete() {
+        for (int key : keys) {
+            set.remove(key);
+        }
+        return set;
+    }
+}
@@ -0,0 +1,100 @@
+package trees.bench;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The orders in which keys are inserted and looked up. Every distribution
+ * draws from the same universe of size distinct even keys, so lookups of
+ * an odd key always miss.
+ */
+public enum KeyDistribution {
+
+    /** Each key once, in random order. */
+    RANDOM {
+        @Override
+        int[] keys(int size, Random random) {
+            return shuffle(ascending(size), random);
+        }
+    },
+
+    /** Each key once, in ascending order. */
+    SORTED {
+        @Override
+        int[] keys(int size, Random random) {
+            return ascending(size);
+        }
+    },
+
+    /** Each key once, in descending order. */
+    REVERSED {
+        @Override
+        int[] keys(int size, Random random) {
+            int[] keys = ascending(size);
+            for (int i = 0, j = size - 1; i < j; i++, j--) {
+                int swap = keys[i];
+                keys[i] = keys[j];
+                keys[j] = swap;
+            }
+            return keys;
+        }
+    },
+
+    /**
+     * Size draws whose popularity ranks follow a Zipf distribution with
+     * exponent ZIPF_EXPONENT, so a few keys repeat very often. Popular keys
+     * are scattered across the key range rather than clustered at one end.
+     */
+    ZIPF {
+        @Override
+        int[] keys(int size, Random random) {
+            int[] byRank = shuffle(ascending(size), random);
+            double[] cumulative = new double[size];
+            double total = 0;
+            for (int i = 0; i < size; i++) {
+                total += 1.0 / Math.pow(i + 1, ZIPF_EXPONENT);
+                cumulative[i] = total;
+            }
+            int[] keys = new int[size];
+            for (int i = 0; i < size; i++) {
+                int rank = Arrays.binarySearch(cumulative, random.nextDouble() * total);
+                if (rank < 0) {
+                    rank = -rank - 1;
+                }
+                keys[i] = byRank[Math.min(rank, size - 1)];
+            }
+            return keys;
+        }
+    };
+
+    // the exponent of the Zipf distribution
+    static final double ZIPF_EXPONENT = 1.0;
+
+    /** Returns size keys drawn from this distribution. */
+    abstract int[] keys(int size, Random random);
+
+    /** Returns size keys drawn from this distribution with a fixed seed. */
+    public int[] keys(int size, long seed) {
+        return keys(size, new Random(seed));
+    }
+
+    /** Returns the even keys 0, 2, ..., 2 * (size - 1). */
+    private static int[] ascending(int size) {
+        int[] keys = new int[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = 2 * i;
+        }
+        return keys;
+    }
+
+    /** Shuffles keys in place and returns them. */
+    private static int[] shuffle(int[] keys, Random random) {
+        for (int i = keys.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = keys[i];
+            keys[i] = keys[j];
+            keys[j] = swap;
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,31 @@
+package trees.bench;
+
+/**
+ * The operations benchmarked on every structure, over int keys. Each
+ * implementation boxes keys the same way so the structures are compared
+ * on equal terms.
+ */
+public interface SortedIntSet {
+
+    /** Adds key, returning true if it was not already present. */
+    boolean add(int key);
+
+    /** Returns true if key is present. */
+    boolean contains(int key);
+
+    /**
+     * Removes key, returning true if it was present.
+     *
+     * @throws UnsupportedOperationException if the structure cannot remove
+     */
+    boolean remove(int key);
+
+    /**
+     * Returns the sum of all keys, visiting them in ascending order through
+     * a sequential stream, which every structure walks in place.
+     */
+    long sum();
+
+    /** Returns the number of keys. */
+    int size();
+}
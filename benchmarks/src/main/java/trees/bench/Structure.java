@@ -0,0 +1,89 @@
+package trees.bench;
+
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Supplier;
+
+/**
+ * The structures under benchmark. The repo's trees live in the default
+ * package, so they are reached through the default-package TreeAdapters
+ * class. It is looked up reflectively once, when a benchmark asks for a
+ * factory in its setup; the factory itself makes plain calls, so creating
+ * a set costs the same for every structure.
+ */
+public enum Structure {
+    BINARY_SEARCH_TREE("BinarySearchTree"),
+    TREAP("BinarySearchTree.TREAP"),
+    SPLAY_TREE("BinarySearchTree.SPLAY"),
+    AVL_TREE("AvlTree"),
+    TREE_SET(null),
+    CONCURRENT_SKIP_LIST_SET(null);
+
+    // the name TreeAdapters knows this structure by, or null for a JDK set
+    private final String adapterName;
+
+    Structure(String adapterName) {
+        this.adapterName = adapterName;
+    }
+
+    /**
+     * Returns a factory for new, empty sets of this kind. Call this in a
+     * setup method and only the returned factory on a measured path.
+     */
+    @SuppressWarnings("unchecked")
+    public Supplier<SortedIntSet> factory() {
+        if (this == TREE_SET) {
+            return () -> wrap(new TreeSet<>());
+        }
+        if (this == CONCURRENT_SKIP_LIST_SET) {
+            return () -> wrap(new ConcurrentSkipListSet<>());
+        }
+        try {
+            return (Supplier<SortedIntSet>) Class.forName("TreeAdapters")
+                    .getMethod("factory", String.class)
+                    .invoke(null, adapterName);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("cannot create " + adapterName, e);
+        }
+    }
+
+    /**
+     * Returns true if loading size keys in the given order would take
+     * quadratic time, which at the larger sizes would stall the whole run.
+     */
+    public boolean isDegenerate(KeyDistribution distribution, int size) {
+        return this == BINARY_SEARCH_TREE && size > 10_000
+                && (distribution == KeyDistribution.SORTED || distribution == KeyDistribution.REVERSED);
+    }
+
+    /** Returns a set backed by the given JDK sorted set. */
+    private static SortedIntSet wrap(NavigableSet<Integer> set) {
+        return new SortedIntSet() {
+            @Override
+            public boolean add(int key) {
+                return set.add(key);
+            }
+
+            @Override
+            public boolean contains(int key) {
+                return set.contains(key);
+            }
+
+            @Override
+            public boolean remove(int key) {
+                return set.remove(key);
+            }
+
+            @Override
+            public long sum() {
+                return set.stream().mapToLong(Integer::longValue).sum();
+            }
+
+            @Override
+            public int size() {
+                return set.size();
+            }
+        };
+    }
+}
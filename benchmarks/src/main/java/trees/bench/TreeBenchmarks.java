@@ -0,0 +1,98 @@
+package trees.bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures insert, lookup and iteration for every structure, key
+ * distribution and size. Each invocation makes one full pass over size
+ * keys, so divide the score by size for the cost of a single operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class TreeBenchmarks {
+
+    @Param({"BINARY_SEARCH_TREE", "TREAP", "SPLAY_TREE", "AVL_TREE",
+            "TREE_SET", "CONCURRENT_SKIP_LIST_SET"})
+    public Structure structure;
+
+    @Param({"RANDOM", "SORTED", "REVERSED", "ZIPF"})
+    public KeyDistribution distribution;
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int size;
+
+    // the keys inserted, and then looked up, in distribution order
+    private int[] keys;
+
+    // makes the empty sets insert fills, resolved once per trial
+    private Supplier<SortedIntSet> factory;
+
+    // a set already holding every key, for lookup and iteration
+    private SortedIntSet filled;
+
+    /** Draws the keys and builds the set that lookups run against. */
+    @Setup(Level.Trial)
+    public void setUp() {
+        if (structure.isDegenerate(distribution, size)) {
+            throw new IllegalStateException("skipped: " + structure + " degrades to a list on "
+                    + distribution + " input, so " + size + " keys would take hours");
+        }
+        keys = distribution.keys(size, 42);
+        factory = structure.factory();
+        filled = factory.get();
+        for (int key : keys) {
+            filled.add(key);
+        }
+    }
+
+    /** Adds every key to an empty set. */
+    @Benchmark
+    public SortedIntSet insert() {
+        SortedIntSet set = factory.get();
+        for (int key : keys) {
+            set.add(key);
+        }
+        return set;
+    }
+
+    /** Looks up every key, each of which is present. */
+    @Benchmark
+    public void lookup(Blackhole blackhole) {
+        for (int key : keys) {
+            blackhole.consume(filled.contains(key));
+        }
+    }
+
+    /** Looks up the odd neighbour of every key, each of which is absent. */
+    @Benchmark
+    public void lookupMiss(Blackhole blackhole) {
+        for (int key : keys) {
+            blackhole.consume(filled.contains(key + 1));
+        }
+    }
+
+    /** Visits every key in ascending order. */
+    @Benchmark
+    public long iterate() {
+        return filled.sum();
+    }
+}